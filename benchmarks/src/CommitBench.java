@@ -0,0 +1,64 @@
+package gitlet;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Construction of commits, from the staging area and from a tree already
+ *  in memory. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class CommitBench {
+
+    /** Number of files tracked by the parent commit. */
+    @Param({"100", "10000"})
+    public int files;
+
+    /** Number of files staged for addition. */
+    private static final int STAGED = 5;
+
+    /** The parent of the new commits. */
+    private Commit _head;
+
+    /** Generate a short history and stage a few changed files. */
+    @Setup
+    public void setup() throws IOException {
+        RepoGenerator.generate(10, files, 0, 42);
+        _head = Main.REPO.getHeadOfBranch("master");
+        for (int k = 0; k < STAGED; k += 1) {
+            Utils.writeContents(Utils.join(Main.ADDITION,
+                                           RepoGenerator.fileName(k)),
+                                "staged " + k + "\n");
+        }
+    }
+
+    /** Build a commit the way the commit command does. */
+    @Benchmark
+    public Commit fromStagingArea() throws IOException {
+        return new Commit("bench", _head.getUid(), "");
+    }
+
+    /** Build a commit from an in-memory tree, as fast-import does. */
+    @Benchmark
+    public Commit fromTree() {
+        return new Commit("bench", _head.getUid(), "", new Date(),
+                          new TreeMap<>(_head.getBlobs()));
+    }
+}
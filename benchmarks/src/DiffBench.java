@@ -0,0 +1,61 @@
+package gitlet;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Line diffs between two versions of a file differing in about one line
+ *  in twenty. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class DiffBench {
+
+    /** Number of lines in each version. */
+    @Param({"100", "1000"})
+    public int lines;
+
+    /** The two versions. */
+    private ArrayList<String> _before, _after;
+
+    /** Build the versions from a seeded random source. */
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        _before = new ArrayList<>();
+        _after = new ArrayList<>();
+        for (int i = 0; i < lines; i += 1) {
+            String line = "line " + random.nextInt(100000);
+            _before.add(line);
+            int edit = random.nextInt(20);
+            if (edit == 0) {
+                _after.add("changed " + line);
+            } else if (edit != 1) {
+                _after.add(line);
+            }
+        }
+    }
+
+    /** Compute the edits from one version to the other. */
+    @Benchmark
+    public int[] diffs() {
+        Diff diff = new Diff();
+        diff.setSequences(_before, _after);
+        return diff.diffs();
+    }
+}
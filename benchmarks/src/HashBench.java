@@ -0,0 +1,150 @@
+package gitlet;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Formatter;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32C;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Hashing of blob contents and of commit ids (which is how commit file
+ *  names are computed) under each object format, with CRC32C as the
+ *  non-cryptographic reference; against the original sha1 that fetched a new
+ *  MessageDigest and formatted each byte through a Formatter, and lookups
+ *  of ids in the sets used by history walks.  Run with
+ *  JMH_FLAGS="-prof gc" to see the allocation per call. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class HashBench {
+
+    /** Size of the hashed contents in bytes. */
+    @Param({"64", "4096", "65536"})
+    public int size;
+
+    /** Contents to hash. */
+    private byte[] _contents;
+    /** A commit id. */
+    private String _uid;
+    /** Ids of 1000 commits, as Strings. */
+    private HashSet<String> _uids;
+    /** The same ids, as ObjectIds. */
+    private HashSet<ObjectId> _ids;
+    /** An id in both sets, as a String and as an ObjectId. */
+    private String _member;
+    /** The ObjectId of _member. */
+    private ObjectId _memberId;
+
+    /** Fill the contents with seeded random bytes. */
+    @Setup
+    public void setup() {
+        _contents = new byte[size];
+        new Random(42).nextBytes(_contents);
+        _uid = Utils.sha1(_contents);
+        _uids = new HashSet<>();
+        _ids = new HashSet<>();
+        for (int i = 0; i < 1000; i += 1) {
+            String uid = Utils.sha1("commit " + i);
+            _uids.add(uid);
+            _ids.add(ObjectId.fromHex(uid));
+        }
+        _member = new String(Utils.sha1("commit 500").toCharArray());
+        _memberId = ObjectId.fromHex(_member);
+    }
+
+    /** Hash blob contents. */
+    @Benchmark
+    public String sha1Contents() {
+        return Utils.sha1(_contents);
+    }
+
+    /** Hash a commit id into its file name. */
+    @Benchmark
+    public String sha1CommitFileName() {
+        return Utils.sha1(_uid);
+    }
+
+    /** Hash blob contents with SHA-256. */
+    @Benchmark
+    public String sha256Contents() {
+        return HashFunction.SHA256.hex(_contents);
+    }
+
+    /** Checksum blob contents with CRC32C, which is not usable as an
+     *  object id but bounds what any hash could gain. */
+    @Benchmark
+    public long crc32cContents() {
+        CRC32C crc = new CRC32C();
+        crc.update(_contents);
+        return crc.getValue();
+    }
+
+    /** Hash blob contents the way sha1 originally did. */
+    @Benchmark
+    public String sha1ContentsFormatter() {
+        return formatterSha1(_contents);
+    }
+
+    /** Hash a commit id into its file name the way sha1 originally did. */
+    @Benchmark
+    public String sha1CommitFileNameFormatter() {
+        return formatterSha1(_uid.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Hash blob contents to an ObjectId, without a hex String. */
+    @Benchmark
+    public ObjectId objectIdContents() {
+        return ObjectId.hash(_contents);
+    }
+
+    /** Look up a commit id in a set of Strings. */
+    @Benchmark
+    public boolean lookupString() {
+        return _uids.contains(_member);
+    }
+
+    /** Look up a commit id in a set of ObjectIds. */
+    @Benchmark
+    public boolean lookupObjectId() {
+        return _ids.contains(_memberId);
+    }
+
+    /** Look up a commit id, given as a String the way Commit stores it, in
+     *  a set of ObjectIds, which is what the history walks pay. */
+    @Benchmark
+    public boolean lookupObjectIdFromHex() {
+        return _ids.contains(ObjectId.fromHex(_member));
+    }
+
+    /** Return the SHA-1 of BYTES as gitlet first computed it. */
+    private static String formatterSha1(byte[] bytes) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-1");
+            md.update(bytes);
+            Formatter result = new Formatter();
+            for (byte b : md.digest()) {
+                result.format("%02x", b);
+            }
+            return result.toString();
+        } catch (NoSuchAlgorithmException excp) {
+            throw new IllegalArgumentException("System does not support SHA-1");
+        }
+    }
+}
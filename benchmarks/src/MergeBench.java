@@ -0,0 +1,57 @@
+package gitlet;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** The split-point search done by merge, on branchy histories. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class MergeBench {
+
+    /** Number of commits on master. */
+    @Param({"1000", "10000"})
+    public int commits;
+
+    /** Heads of master and of the branch merged into it. */
+    private Commit _master, _topic;
+    /** Ancestors of the topic branch. */
+    private HashSet<String> _ancestors;
+
+    /** Generate a history with a side-branch merge every ten commits. */
+    @Setup
+    public void setup() throws IOException {
+        RepoGenerator.generate(commits, 50, 10, 42);
+        _master = Main.REPO.getHeadOfBranch("master");
+        _topic = Main.REPO.getHeadOfBranch("topic");
+        _ancestors = Main.getAncestorsOfMergingBranch(_topic);
+    }
+
+    /** Collect the ancestors of the branch being merged. */
+    @Benchmark
+    public HashSet<String> ancestors() {
+        return Main.getAncestorsOfMergingBranch(_topic);
+    }
+
+    /** Find the split point given those ancestors. */
+    @Benchmark
+    public Commit splitPoint() {
+        return Main.getSplit(_ancestors, _master);
+    }
+}
@@ -0,0 +1,56 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Reading and serializing commits tracking many files. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ObjectBench {
+
+    /** Number of files tracked by the commit. */
+    @Param({"100", "10000"})
+    public int files;
+
+    /** File holding the commit. */
+    private File _file;
+    /** The commit itself. */
+    private Commit _commit;
+
+    /** Generate a short history over FILES files. */
+    @Setup
+    public void setup() throws IOException {
+        RepoGenerator.generate(10, files, 0, 42);
+        _commit = Main.REPO.getHeadOfBranch("master");
+        _file = Utils.join(Main.COMMITS_FOLDER, Utils.hash(_commit.getUid()));
+    }
+
+    /** Deserialize the head commit from disk. */
+    @Benchmark
+    public Commit readObject() {
+        return Utils.readObject(_file, Commit.class);
+    }
+
+    /** Serialize the head commit. */
+    @Benchmark
+    public byte[] serialize() {
+        return Utils.serialize(_commit);
+    }
+}
@@ -0,0 +1,77 @@
+package gitlet;
+
+import java.util.Arrays;
+
+/** The raw bytes of an object id, which HashBench compares with hex
+ *  Strings as the element of the sets built during history walks.
+ *  Hashing uses the leading id bytes directly, since they are already
+ *  uniformly distributed, and equality compares bytes rather than hex
+ *  digits.
+ */
+final class ObjectId implements Comparable<ObjectId> {
+
+    /** An id whose bytes are BYTES, which is not copied. */
+    private ObjectId(byte[] bytes) {
+        _bytes = bytes;
+        int hash = 0;
+        for (int i = 0; i < Math.min(4, bytes.length); i += 1) {
+            hash = (hash << 8) | (bytes[i] & 0xff);
+        }
+        _hash = hash;
+    }
+
+    /** Return the id written as the hexadecimal numeral HEX. */
+    static ObjectId fromHex(String hex) {
+        if (hex.length() % 2 != 0) {
+            throw new IllegalArgumentException("odd-length id: " + hex);
+        }
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i += 1) {
+            int hi = Character.digit(hex.charAt(2 * i), 16);
+            int lo = Character.digit(hex.charAt(2 * i + 1), 16);
+            if (hi < 0 || lo < 0) {
+                throw new IllegalArgumentException("not an id: " + hex);
+            }
+            bytes[i] = (byte) ((hi << 4) | lo);
+        }
+        return new ObjectId(bytes);
+    }
+
+    /** Return the id of VALS, as for Utils.hash, without going through a
+     *  hexadecimal String. */
+    static ObjectId hash(Object... vals) {
+        return new ObjectId(HashFunction.current().digest(vals));
+    }
+
+    /** Return this id as a hexadecimal numeral. */
+    String toHex() {
+        return Utils.toHex(_bytes);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof ObjectId
+            && _hash == ((ObjectId) obj)._hash
+            && Arrays.equals(_bytes, ((ObjectId) obj)._bytes);
+    }
+
+    @Override
+    public int hashCode() {
+        return _hash;
+    }
+
+    @Override
+    public int compareTo(ObjectId other) {
+        return Arrays.compareUnsigned(_bytes, other._bytes);
+    }
+
+    @Override
+    public String toString() {
+        return toHex();
+    }
+
+    /** The id's bytes. */
+    private final byte[] _bytes;
+    /** Hash code, from the leading bytes. */
+    private final int _hash;
+}
@@ -0,0 +1,161 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+/** Builds synthetic repositories in the working directory for the
+ *  benchmarks by generating a fast-import stream.  Commit times are fixed,
+ *  so in a given time zone the same arguments always produce the same
+ *  repository, down to the commit ids. */
+class RepoGenerator {
+
+    /** Time of the first generated commit, in seconds since the epoch. */
+    private static final long EPOCH = 1_600_000_000L;
+
+    /** Replace any repository in the working directory with one whose
+     *  master branch has COMMITS commits over FILES files, each commit
+     *  changing a few of them.  If BRANCHEVERY is positive, every
+     *  BRANCHEVERY-th commit on master is a merge of a two-commit side
+     *  branch.  A branch named "topic" forks from master halfway through
+     *  and gets COMMITS / 10 commits of its own.  SEED fixes the file
+     *  contents. */
+    static void generate(int commits, int files, int branchEvery, long seed)
+        throws IOException {
+        RepoGenerator gen = new RepoGenerator(files, seed);
+        gen.stream(commits, branchEvery);
+        delete(Main.GITLET_FOLDER);
+        Main.setupPersistence();
+        Commit initial = new Commit("initial commit", "", "");
+        Main.REPO.updateCommit(initial);
+        Main.REPO.makeNewBranch("master", initial);
+        Main.REPO.setCurrentBranch("master");
+        new FastImport(new ByteArrayInputStream(gen._out.toByteArray()))
+            .importAll();
+    }
+
+    /** Return the name of generated file number K. */
+    static String fileName(int k) {
+        return String.format("f%05d.txt", k);
+    }
+
+    /** Delete FILE and, if it is a directory, everything under it. */
+    static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    /** A generator of repositories over FILES files seeded with SEED. */
+    private RepoGenerator(int files, long seed) {
+        _files = files;
+        _random = new Random(seed);
+    }
+
+    /** Write the whole stream for COMMITS commits on master, merging a
+     *  side branch every BRANCHEVERY commits, plus the topic branch. */
+    private void stream(int commits, int branchEvery) {
+        TreeMap<String, Integer> all = new TreeMap<>();
+        for (int k = 0; k < _files; k += 1) {
+            all.put(fileName(k), blob());
+        }
+        int head = commit("master", "commit 0", null, all);
+        int fork = head;
+        for (int i = 1; i < commits; i += 1) {
+            if (branchEvery > 0 && i % branchEvery == 0) {
+                line("reset side");
+                line("from :" + head);
+                TreeMap<String, Integer> side = changes();
+                commit("side", "side " + i + "a", null, side);
+                TreeMap<String, Integer> more = changes();
+                int tip = commit("side", "side " + i + "b", null, more);
+                side.putAll(more);
+                head = commit("master", "merge " + i, ":" + tip, side);
+            } else {
+                head = commit("master", "commit " + i, null, changes());
+            }
+            if (i == commits / 2) {
+                fork = head;
+            }
+        }
+        line("reset topic");
+        line("from :" + fork);
+        for (int i = 0; i < Math.max(1, commits / 10); i += 1) {
+            commit("topic", "topic " + i, null, changes());
+        }
+    }
+
+    /** Return new contents for a few randomly chosen files, by mark. */
+    private TreeMap<String, Integer> changes() {
+        TreeMap<String, Integer> result = new TreeMap<>();
+        int count = Math.max(1, _files / 20);
+        for (int i = 0; i < count; i += 1) {
+            result.put(fileName(_random.nextInt(_files)), blob());
+        }
+        return result;
+    }
+
+    /** Emit a random blob of a few dozen lines and return its mark. */
+    private int blob() {
+        StringBuilder contents = new StringBuilder();
+        int lines = 20 + _random.nextInt(40);
+        for (int i = 0; i < lines; i += 1) {
+            contents.append("line ").append(_random.nextInt(1000))
+                .append('\n');
+        }
+        int mark = _nextMark++;
+        line("blob");
+        line("mark :" + mark);
+        data(contents.toString());
+        return mark;
+    }
+
+    /** Emit a commit on BRANCH with message MSG, an optional MERGE
+     *  reference and the file changes in FILES, and return its mark. */
+    private int commit(String branch, String msg, String merge,
+                       TreeMap<String, Integer> files) {
+        int mark = _nextMark++;
+        line("commit " + branch);
+        line("mark :" + mark);
+        line("time " + (EPOCH + 60L * _nextMark));
+        data(msg);
+        if (merge != null) {
+            line("merge " + merge);
+        }
+        for (Map.Entry<String, Integer> file : files.entrySet()) {
+            line("M :" + file.getValue() + " " + file.getKey());
+        }
+        return mark;
+    }
+
+    /** Emit a data command holding TEXT. */
+    private void data(String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        line("data " + bytes.length);
+        _out.writeBytes(bytes);
+        line("");
+    }
+
+    /** Emit TEXT followed by a newline. */
+    private void line(String text) {
+        _out.writeBytes((text + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Number of files in the generated tree. */
+    private final int _files;
+    /** Source of file contents. */
+    private final Random _random;
+    /** The stream being generated. */
+    private final ByteArrayOutputStream _out = new ByteArrayOutputStream();
+    /** Next unused mark. */
+    private int _nextMark = 1;
+}
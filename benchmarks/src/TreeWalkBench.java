@@ -0,0 +1,128 @@
+package gitlet;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** The three-way classification of paths that merge does, over a split
+ *  point and two heads that each change, delete and add about one path
+ *  in a hundred: by a TreeWalk merge-join, and by looking each path of
+ *  one tree up in the others with containsKey and get, as merge did
+ *  before TreeWalk. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class TreeWalkBench {
+
+    /** Number of paths in the split point. */
+    @Param({"100000"})
+    public int paths;
+
+    /** The split point's files, and those of the two heads. */
+    private TreeMap<String, String> _split, _ours, _theirs;
+
+    /** Build the trees from a seeded random source. */
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        _split = new TreeMap<>();
+        for (int i = 0; i < paths; i += 1) {
+            _split.put(String.format("dir%03d/file%06d.txt", i % 1000, i),
+                       Utils.sha1("blob " + i));
+        }
+        _ours = edit(_split, random, "ours");
+        _theirs = edit(_split, random, "theirs");
+    }
+
+    /** Classify every path in one TreeWalk, returning the number that
+     *  take their version, that keep ours and that conflict. */
+    @Benchmark
+    public int[] treeWalk() {
+        int[] result = new int[3];
+        TreeWalk walk = new TreeWalk();
+        int base = walk.add(_split);
+        int ours = walk.add(_ours);
+        int theirs = walk.add(_theirs);
+        while (walk.next()) {
+            int side = walk.merged(base, ours, theirs);
+            result[side == theirs ? 0 : side == ours ? 1 : 2] += 1;
+        }
+        return result;
+    }
+
+    /** Classify every path by lookups, as treeWalk does. */
+    @Benchmark
+    public int[] containsKey() {
+        int[] result = new int[3];
+        for (String path : _split.keySet()) {
+            classify(path, result);
+        }
+        for (String path : _ours.keySet()) {
+            if (!_split.containsKey(path)) {
+                classify(path, result);
+            }
+        }
+        for (String path : _theirs.keySet()) {
+            if (!_split.containsKey(path) && !_ours.containsKey(path)) {
+                classify(path, result);
+            }
+        }
+        return result;
+    }
+
+    /** Count PATH in RESULT as treeWalk does, looking it up in each
+     *  tree. */
+    private void classify(String path, int[] result) {
+        String base = _split.get(path);
+        String ours = _ours.containsKey(path) ? _ours.get(path) : null;
+        String theirs =
+            _theirs.containsKey(path) ? _theirs.get(path) : null;
+        if (Objects.equals(base, theirs) || Objects.equals(ours, theirs)) {
+            result[1] += 1;
+        } else if (Objects.equals(base, ours)) {
+            result[0] += 1;
+        } else {
+            result[2] += 1;
+        }
+    }
+
+    /** Return a copy of TREE with about one path in a hundred changed,
+     *  one deleted and one added, using RANDOM and naming new blobs and
+     *  paths after SIDE. */
+    private static TreeMap<String, String> edit(TreeMap<String, String> tree,
+                                                Random random, String side) {
+        TreeMap<String, String> result = new TreeMap<>();
+        int n = 0;
+        for (Map.Entry<String, String> entry : tree.entrySet()) {
+            int edit = random.nextInt(100);
+            if (edit == 0) {
+                result.put(entry.getKey(), Utils.sha1(side + " " + n));
+            } else if (edit != 1) {
+                result.put(entry.getKey(), entry.getValue());
+            }
+            if (edit == 2) {
+                result.put(entry.getKey() + "." + side,
+                           Utils.sha1(side + " new " + n));
+            }
+            n += 1;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,219 @@
+package gitlet;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/** The blame command:
+ *
+ *      blame FILE
+ *
+ *  prints each line of FILE as the head commit has it, preceded by the
+ *  first eight digits of the commit that last changed the line and the
+ *  line number.  Blame goes back along first parents one version of FILE
+ *  at a time, using the commit graph to pass over commits that did not
+ *  change it.  Each step compares the lines of one version with those of
+ *  the version before it, with Diff, after setting aside the lines they
+ *  begin and end with in common; lines the older version lacks belong to
+ *  the commit that made the newer one, and the rest are traced further
+ *  back.  Blame stops as soon as every line has a commit, so it rarely
+ *  reads the whole history of FILE.  Changes merged from other branches
+ *  belong to the merge commit.
+ *
+ *  The result is kept in the blame cache, .gitlet/blame-cache, under the
+ *  file name and the commit that made the version blamed.  When blame
+ *  reaches a version found there it takes the owners of the lines it is
+ *  still tracing from the cache, so blaming a file again after one new
+ *  commit compares only the two newest versions.  gc empties the cache.
+ */
+class Blame {
+
+    /** Folder of cached results. */
+    static final File CACHE_FOLDER =
+        Utils.join(Main.COMMON_FOLDER, "blame-cache");
+
+    /** Run blame with ARGS, which starts with "blame". */
+    static void run(String... args) {
+        if (args.length != 2) {
+            System.out.println("Incorrect operands.");
+            System.exit(0);
+        }
+        String path = args[1];
+        String head = Main.REPO.getBranchId(Main.REPO.getCurrentBranch());
+        String blob = Main.REPO.readCommit(head).getBlobs().get(path);
+        if (blob == null) {
+            System.out.println("File does not exist in that commit.");
+            System.exit(0);
+        }
+        List<String> lines = lines(blob);
+        String[] owners = blame(path, introducer(head, path, blob),
+                                lines.size());
+        StringBuilder out = new StringBuilder();
+        int width = Integer.toString(lines.size()).length();
+        for (int i = 0; i < lines.size(); i += 1) {
+            out.append(owners[i], 0, 8).append(' ')
+                .append(String.format("%" + width + "d", i + 1))
+                .append(") ").append(lines.get(i)).append('\n');
+        }
+        System.out.print(out);
+    }
+
+    /** Delete every cached result. */
+    static void clearCache() {
+        File[] files = CACHE_FOLDER.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+    }
+
+    /** Return the commits that last changed each of the SIZE lines of
+     *  PATH as commit MADE, which made that version, has it. */
+    private static String[] blame(String path, String made, int size) {
+        String[] owners = new String[size];
+        int[] tracing = new int[size];
+        int[] position = new int[size];
+        int count = size;
+        for (int i = 0; i < size; i += 1) {
+            tracing[i] = position[i] = i;
+        }
+        String at = made;
+        String blob = Main.REPO.readCommit(at).getBlobs().get(path);
+        while (count > 0) {
+            String[] cached = readCache(path, at);
+            if (cached != null && at.equals(made)) {
+                return cached;
+            } else if (cached != null) {
+                for (int k = 0; k < count; k += 1) {
+                    owners[tracing[k]] = cached[position[k]];
+                }
+                break;
+            }
+            String dad = Main.REPO.commitGraph().lookup(at).dad;
+            String older = dad.equals("") ? null
+                : Main.REPO.readCommit(dad).getBlobs().get(path);
+            if (older == null) {
+                for (int k = 0; k < count; k += 1) {
+                    owners[tracing[k]] = at;
+                }
+                break;
+            }
+            int[] map = match(lines(older), lines(blob));
+            int kept = 0;
+            for (int k = 0; k < count; k += 1) {
+                int was = map[position[k]];
+                if (was < 0) {
+                    owners[tracing[k]] = at;
+                } else {
+                    tracing[kept] = tracing[k];
+                    position[kept] = was;
+                    kept += 1;
+                }
+            }
+            count = kept;
+            blob = older;
+            at = introducer(dad, path, blob);
+        }
+        writeCache(path, made, owners);
+        return owners;
+    }
+
+    /** Return the commit that made the version BLOB of PATH that commit
+     *  UID has: the last commit along UID's first parents whose first
+     *  parent has another version or none. */
+    private static String introducer(String uid, String path, String blob) {
+        CommitGraph graph = Main.REPO.commitGraph();
+        while (true) {
+            CommitGraph.Entry entry = graph.lookup(uid);
+            String dad = entry.dad;
+            if (dad.equals("")) {
+                return uid;
+            }
+            if (entry.mayHaveChanged(path)
+                && !blob.equals(Main.REPO.readCommit(dad).getBlobs()
+                                .get(path))) {
+                return uid;
+            }
+            uid = dad;
+        }
+    }
+
+    /** Return, for each line of NEWER, the index of the line of OLDER it
+     *  was left unchanged from, or -1 if it is new.  Lines NEWER begins
+     *  and ends with in common with OLDER are matched directly; Diff
+     *  compares only what lies between. */
+    private static int[] match(List<String> older, List<String> newer) {
+        int[] map = new int[newer.size()];
+        Arrays.fill(map, -1);
+        int start = 0;
+        int limit = Math.min(older.size(), newer.size());
+        while (start < limit && older.get(start).equals(newer.get(start))) {
+            map[start] = start;
+            start += 1;
+        }
+        int end = 0;
+        while (end < limit - start
+               && older.get(older.size() - 1 - end)
+                  .equals(newer.get(newer.size() - 1 - end))) {
+            map[newer.size() - 1 - end] = older.size() - 1 - end;
+            end += 1;
+        }
+        List<String> middle1 = older.subList(start, older.size() - end);
+        List<String> middle2 = newer.subList(start, newer.size() - end);
+        if (middle1.isEmpty() || middle2.isEmpty()) {
+            return map;
+        }
+        Diff diff = new Diff();
+        diff.setSequences(middle1, middle2);
+        int[] common = diff.commonSubsequence();
+        for (int k = 0; k < common.length; k += 3) {
+            for (int i = 0; i < common[k + 2]; i += 1) {
+                map[start + common[k + 1] + i] = start + common[k] + i;
+            }
+        }
+        return map;
+    }
+
+    /** Return the lines of blob ID. */
+    private static List<String> lines(String id) {
+        String text =
+            Utils.readContentsAsString(Utils.join(Main.BLOBS_FOLDER, id));
+        if (text.isEmpty()) {
+            return new ArrayList<>();
+        }
+        if (text.endsWith("\n")) {
+            text = text.substring(0, text.length() - 1);
+        }
+        return Arrays.asList(text.split("\n", -1));
+    }
+
+    /** Return the cache file for PATH as made by commit MADE. */
+    private static File cacheFile(String path, String made) {
+        return Utils.join(CACHE_FOLDER, Utils.hash(made, path));
+    }
+
+    /** Return the cached owners of the lines of PATH as made by commit
+     *  MADE, or null if they are not cached. */
+    private static String[] readCache(String path, String made) {
+        File file = cacheFile(path, made);
+        if (!file.isFile()) {
+            return null;
+        }
+        String text = Utils.readContentsAsString(file);
+        return text.isEmpty() ? new String[0] : text.split("\n");
+    }
+
+    /** Cache OWNERS as the owners of the lines of PATH as made by commit
+     *  MADE. */
+    private static void writeCache(String path, String made,
+                                   String[] owners) {
+        CACHE_FOLDER.mkdir();
+        StringBuilder out = new StringBuilder();
+        for (String owner : owners) {
+            out.append(owner).append('\n');
+        }
+        Utils.writeContents(cacheFile(path, made), out.toString());
+    }
+}
@@ -0,0 +1,321 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestInputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static gitlet.Utils.hash;
+
+/** The bundle command, which packs the history reachable from some branches
+ *  into a single file and unpacks it into another repository.  A bundle is
+ *  a header naming its compression and object format (version 1 bundles
+ *  have no format line and are SHA-1), followed by a (possibly gzipped)
+ *  body: the branch heads, every reachable commit file and every blob those
+ *  commits track, each preceded by its id and length.  The body ends with
+ *  the SHA-1 of everything before it, so a damaged bundle is rejected
+ *  before any of it is written.
+ */
+class Bundle {
+
+    /** First line of every bundle. */
+    private static final String MAGIC = "# gitlet bundle v2";
+    /** First line of bundles written before object formats. */
+    private static final String MAGIC_V1 = "# gitlet bundle v1";
+    /** Length of the trailing checksum in bytes. */
+    private static final int CHECKSUM_LENGTH = 20;
+
+    /** Run bundle with ARGS, which starts with "bundle". */
+    static void run(String... args) throws IOException {
+        if (args.length >= 3 && args[1].equals("create")) {
+            boolean gzip = args[2].equals("--gzip");
+            int first = gzip ? 3 : 2;
+            if (args.length < first + 2) {
+                Main.incorrectOperands();
+            }
+            create(new File(args[first]),
+                   Arrays.copyOfRange(args, first + 1, args.length), gzip);
+        } else if (args.length == 3 && args[1].equals("unbundle")) {
+            unbundle(new File(args[2]));
+        } else {
+            Main.incorrectOperands();
+        }
+    }
+
+    /** Write the history reachable from BRANCHES to FILE, compressing the
+     *  body iff GZIP. */
+    static void create(File file, String[] branches, boolean gzip)
+        throws IOException {
+        LinkedHashMap<String, String> heads = new LinkedHashMap<>();
+        for (String branch : branches) {
+            String head = Main.REPO.getBranchId(branch);
+            if (head == null) {
+                System.out.println("A branch with that name does not exist.");
+                System.exit(0);
+            }
+            heads.put(branch, head);
+        }
+        TreeSet<String> commits = new TreeSet<>();
+        TreeSet<String> blobs = new TreeSet<>();
+        reachable(heads.values(), commits, blobs);
+
+        OutputStream out =
+            new BufferedOutputStream(new FileOutputStream(file), 1 << 16);
+        String header = MAGIC + "\n" + (gzip ? "gzip" : "none") + "\n"
+            + HashFunction.current().name() + "\n";
+        out.write(header.getBytes(StandardCharsets.UTF_8));
+        if (gzip) {
+            out = new GZIPOutputStream(out, 1 << 16);
+        }
+        MessageDigest md = checksum();
+        DataOutputStream body =
+            new DataOutputStream(new DigestOutputStream(out, md));
+        body.writeInt(heads.size());
+        for (Map.Entry<String, String> head : heads.entrySet()) {
+            body.writeUTF(head.getKey());
+            body.writeUTF(head.getValue());
+        }
+        body.writeInt(commits.size());
+        for (String uid : commits) {
+            body.writeUTF(uid);
+            copy(Utils.join(Main.COMMITS_FOLDER, hash(uid)), body);
+        }
+        body.writeInt(blobs.size());
+        for (String id : blobs) {
+            body.writeUTF(id);
+            copy(Utils.join(Main.BLOBS_FOLDER, id), body);
+        }
+        body.flush();
+        out.write(md.digest());
+        out.close();
+        System.out.println("Bundled " + commits.size() + " commits and "
+                           + blobs.size() + " blobs.");
+    }
+
+    /** Add to COMMITS the uids of all commits reachable from HEADS, and to
+     *  BLOBS the ids of every blob they track. */
+    private static void reachable(Iterable<String> heads,
+                                  TreeSet<String> commits,
+                                  TreeSet<String> blobs) {
+        ArrayDeque<String> work = new ArrayDeque<>();
+        for (String head : heads) {
+            work.push(head);
+        }
+        while (!work.isEmpty()) {
+            String uid = work.pop();
+            if (uid.equals("") || !commits.add(uid)) {
+                continue;
+            }
+            File file = Utils.join(Main.COMMITS_FOLDER, hash(uid));
+            Commit commit = Utils.readObject(file, Commit.class);
+            blobs.addAll(commit.getBlobs().values());
+            work.push(commit.getDad());
+            work.push(commit.getMom());
+        }
+    }
+
+    /** Write the length of FILE and then its contents to OUT. */
+    private static void copy(File file, DataOutputStream out)
+        throws IOException {
+        long length = file.length();
+        if (length > Integer.MAX_VALUE) {
+            throw Utils.error("File too large to bundle: %s", file);
+        }
+        out.writeInt((int) length);
+        try (InputStream in = new FileInputStream(file)) {
+            in.transferTo(out);
+        }
+    }
+
+    /** Verify the bundle in FILE, copy in the objects this repository is
+     *  missing and then point the bundled branches at their heads.  As with
+     *  push, a branch is only moved forward: one whose head is not in the
+     *  history of the bundled head is left alone, as are the current
+     *  branch and a branch whose name clashes with a directory of
+     *  branches. */
+    static void unbundle(File file) throws IOException {
+        if (!file.isFile()) {
+            System.out.println("File does not exist.");
+            System.exit(0);
+        }
+        try {
+            read(file, false);
+            LinkedHashMap<String, String> heads = read(file, true);
+            for (Map.Entry<String, String> head : heads.entrySet()) {
+                String branch = head.getKey();
+                String local = Main.REPO.getBranchId(branch);
+                String conflict = Main.REPO.conflictingBranch(branch);
+                if (branch.equals(Main.REPO.getCurrentBranch())) {
+                    System.out.println("Skipped the current branch "
+                                       + branch + ".");
+                } else if (conflict != null) {
+                    System.out.println("Skipped branch " + branch
+                                       + ", which conflicts with "
+                                       + conflict + ".");
+                } else if (local != null
+                           && !Remote.isAncestor(local, head.getValue())) {
+                    System.out.println("Skipped branch " + branch
+                                       + ", which is not a fast-forward.");
+                } else {
+                    Main.REPO.setBranch(branch, head.getValue(),
+                                        "unbundle: " + file.getName());
+                }
+            }
+            System.out.println("Unbundled " + _commitCount + " commits and "
+                               + _blobCount + " blobs.");
+        } catch (IOException | GitletException | IllegalArgumentException
+                 excp) {
+            System.out.println("Bundle is corrupt.");
+            System.exit(0);
+        }
+    }
+
+    /** Read the bundle in FILE, checking every object and the trailing
+     *  checksum, and return its branch heads.  Objects are written to this
+     *  repository only iff WRITE, so a first pass with WRITE false leaves
+     *  the repository untouched if anything is wrong. */
+    private static LinkedHashMap<String, String> read(File file, boolean write)
+        throws IOException {
+        _commitCount = _blobCount = 0;
+        try (InputStream raw = new BufferedInputStream(
+                 new FileInputStream(file), 1 << 16)) {
+            String magic = readLine(raw);
+            if (!MAGIC.equals(magic) && !MAGIC_V1.equals(magic)) {
+                throw Utils.error("Not a gitlet bundle.");
+            }
+            String compression = readLine(raw);
+            String format = MAGIC_V1.equals(magic)
+                ? HashFunction.SHA1.name() : readLine(raw);
+            if (!HashFunction.current().name().equals(format)) {
+                System.out.println("Bundle uses a different object format.");
+                System.exit(0);
+            }
+            InputStream in;
+            if ("gzip".equals(compression)) {
+                in = new GZIPInputStream(raw, 1 << 16);
+            } else if ("none".equals(compression)) {
+                in = raw;
+            } else {
+                throw Utils.error("Unknown bundle compression.");
+            }
+            MessageDigest md = checksum();
+            DigestInputStream digested = new DigestInputStream(in, md);
+            DataInputStream body = new DataInputStream(digested);
+            LinkedHashMap<String, String> heads = new LinkedHashMap<>();
+            for (int n = body.readInt(); n > 0; n -= 1) {
+                String branch = body.readUTF();
+                checkName(branch);
+                heads.put(branch, body.readUTF());
+            }
+            HashSet<String> uids = new HashSet<>();
+            for (int n = body.readInt(); n > 0; n -= 1) {
+                String uid = body.readUTF();
+                byte[] contents = readBytes(body);
+                Commit commit = Utils.deserialize(contents, Commit.class);
+                if (!commit.getUid().equals(uid)) {
+                    throw Utils.error("Commit %s does not match its id.", uid);
+                }
+                uids.add(uid);
+                File dest = Utils.join(Main.COMMITS_FOLDER, hash(uid));
+                if (write && !dest.isFile()) {
+                    Utils.writeContents(dest, contents);
+                    _commitCount += 1;
+                }
+            }
+            for (int n = body.readInt(); n > 0; n -= 1) {
+                String id = body.readUTF();
+                byte[] contents = readBytes(body);
+                if (!hash(contents).equals(id)) {
+                    throw Utils.error("Blob %s does not match its id.", id);
+                }
+                File dest = Utils.join(Main.BLOBS_FOLDER, id);
+                if (write && !dest.isFile()) {
+                    Utils.writeContents(dest, contents);
+                    _blobCount += 1;
+                }
+            }
+            digested.on(false);
+            byte[] expected = body.readNBytes(CHECKSUM_LENGTH);
+            if (!MessageDigest.isEqual(expected, md.digest())) {
+                throw Utils.error("Bundle checksum mismatch.");
+            }
+            for (String head : heads.values()) {
+                if (!uids.contains(head)) {
+                    throw Utils.error("Bundle lacks head %s.", head);
+                }
+            }
+            return heads;
+        }
+    }
+
+    /** Throw an error unless NAME can be a branch: it must not be the
+     *  legacy HEAD file or have an empty, "." or ".." component. */
+    private static void checkName(String name) {
+        if (name.equals(Refs.LEGACY_HEAD)) {
+            throw Utils.error("Bad branch name %s.", name);
+        }
+        for (String part : name.split("/", -1)) {
+            if (part.isEmpty() || part.equals(".") || part.equals("..")) {
+                throw Utils.error("Bad branch name %s.", name);
+            }
+        }
+    }
+
+    /** Read a length-prefixed byte array from IN. */
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            throw Utils.error("Negative object length.");
+        }
+        byte[] result = in.readNBytes(length);
+        if (result.length != length) {
+            throw new EOFException();
+        }
+        return result;
+    }
+
+    /** Read a header line from IN one byte at a time, so that nothing past
+     *  it is consumed. */
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = in.read()) != -1 && c != '\n') {
+            line.append((char) c);
+        }
+        return line.toString();
+    }
+
+    /** Return a fresh digest for bundle checksums. */
+    private static MessageDigest checksum() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException excp) {
+            throw new IllegalArgumentException("System does not support SHA-1");
+        }
+    }
+
+    /** Number of commits written by the last read. */
+    private static int _commitCount;
+    /** Number of blobs written by the last read. */
+    private static int _blobCount;
+}
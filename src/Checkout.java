@@ -0,0 +1,81 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.TreeMap;
+
+/** The engine shared by checkout of a branch, reset and fast-forward
+ *  merges: moves the working directory from one commit's files to
+ *  another's.  Both trees are already in memory, so it only touches the
+ *  files that differ between them, and copies blobs into place on the
+ *  Workers pool.
+ */
+class Checkout {
+
+    /** Make the files tracked by CURRENT, which the working directory
+     *  is assumed to hold, into the files tracked by TARGET.  Files whose
+     *  blob is the same in both commits are left alone if the working
+     *  copy still has that blob, and rewritten otherwise; files tracked
+     *  only by CURRENT are deleted, and files outside the sparse set are
+     *  not written.  The changes are found in one walk over both
+     *  commits and the working directory.  If an untracked file is in the
+     *  way of a file TARGET tracks, report it and exit before changing
+     *  anything; other untracked files are never touched. */
+    static void apply(Commit current, Commit target) {
+        TreeWalk walk = new TreeWalk();
+        int from = walk.add(current.getBlobs());
+        int to = walk.add(target.getBlobs());
+        int work = walk.add(WorkDir.tree(), WorkDir::contentId);
+        ArrayList<String> writes = new ArrayList<>();
+        ArrayList<String> deletes = new ArrayList<>();
+        while (walk.next()) {
+            String path = walk.path();
+            if (!walk.has(to)) {
+                if (walk.has(from)) {
+                    deletes.add(path);
+                }
+            } else if (Sparse.includes(path)) {
+                if (walk.has(work) && !walk.has(from)) {
+                    Main.untracked();
+                }
+                if (!walk.same(from, to)
+                    || !walk.id(to).equals(workId(walk, work, path))) {
+                    writes.add(path);
+                }
+            }
+        }
+        TreeMap<String, String> blobs = target.getBlobs();
+        Workers.forEach(writes, path -> write(path, blobs.get(path)));
+        for (String path : deletes) {
+            Utils.join(Main.CWD, path).delete();
+        }
+    }
+
+    /** Return the id of the working file at PATH, which is tree WORK of
+     *  WALK if the scan found it, or null if there is no such file. */
+    private static String workId(TreeWalk walk, int work, String path) {
+        return walk.has(work) ? walk.id(work) : WorkDir.contentId(path);
+    }
+
+    /** Copy blob ID to PATH in the working directory, creating its
+     *  directory if needed. */
+    static void write(String path, String id) {
+        File dest = Utils.join(Main.CWD, path);
+        File parent = dest.getParentFile();
+        if (parent != null) {
+            parent.mkdirs();
+        }
+        try {
+            Files.copy(Utils.join(Main.BLOBS_FOLDER, id).toPath(),
+                       dest.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            if (Trace.ENABLED) {
+                Trace.wrote(dest.length());
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+}
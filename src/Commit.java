@@ -3,6 +3,7 @@ package gitlet;
 import java.io.File;
 import java.io.IOException;
 import java.io.Serializable;
+import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.TreeMap;
@@ -10,15 +11,24 @@ import java.util.TreeMap;
 import static gitlet.Utils.*;
 
 public class Commit implements Serializable {
+    /** Pinned to the id of the original class, so that commits written
+     *  before its members changed can still be read. */
+    private static final long serialVersionUID = 6042844971746511953L;
+    /** Format of the timestamp shown by log. */
+    static final String DATE_PATTERN = "E MMM dd HH:mm:ss yyyy Z";
+
     /** Log message. */
     private String msg;
     /** Timestamp for creation. */
     private String time;
+    /** Time of creation in milliseconds since the epoch, or 0 in commits
+     *  written before it was recorded. */
+    private long epoch;
     /** UID of parent commit. */
     private String dad;
     /** UID of second parent commit. */
     private String mom;
-    /** Keys with filename and values with sha1 of file contents. */
+    /** Keys with filename and values with the ids of file contents. */
     private TreeMap<String, String> blobs;
     /** Current Working Directory. */
     private String uid;
@@ -27,30 +37,55 @@ public class Commit implements Serializable {
         this.msg = mess;
         this.dad = pa;
         this.mom = secPa;
-        String patt = "E MMM dd HH:mm:ss yyyy Z";
-        SimpleDateFormat dateFormat = new SimpleDateFormat(patt);
+        SimpleDateFormat dateFormat = new SimpleDateFormat(DATE_PATTERN);
         Date date;
         if (this.dad.equals("")) {
             date = new Date(0);
             this.time = dateFormat.format(date);
+            this.epoch = date.getTime();
             this.blobs = new TreeMap<>();
         } else {
             date = new Date();
             this.time = dateFormat.format(date);
-            File par = Utils.join(Main.COMMITS_FOLDER, sha1(pa));
+            this.epoch = date.getTime();
+            File par = Utils.join(Main.COMMITS_FOLDER, hash(pa));
             this.blobs = Utils.readObject(par, Commit.class).getBlobs();
-            for (File f : Main.ADDITION.listFiles()) {
-                this.blobs.put(f.getName(), sha1(Utils.readContents(f)));
-                File blob = Utils.join(Main.BLOBS_FOLDER, sha1(Utils.readContents(f)));
-                Utils.writeContents(blob, Utils.readContents(f));
+            for (String path : Main.REPO.staged(Main.ADDITION)) {
+                byte[] contents =
+                    Utils.readContents(Utils.join(Main.ADDITION, path));
+                String id = hash(contents);
+                this.blobs.put(path, id);
+                File blob = Utils.join(Main.BLOBS_FOLDER, id);
+                if (!blob.isFile()) {
+                    Utils.writeContents(blob, contents);
+                }
             }
-            for (File f : Main.REMOVAL.listFiles()) {
-                this.blobs.remove(f.getName());
-                File blob = Utils.join(Main.BLOBS_FOLDER, sha1(Utils.readContents(f)));
-                blob.delete();
+            for (String path : Main.REPO.staged(Main.REMOVAL)) {
+                this.blobs.remove(path);
             }
         }
-        this.uid = sha1(this.msg, this.time, this.dad, serialize(this.blobs));
+        this.uid = hash(this.msg, this.time, this.dad, serialize(this.blobs));
+    }
+
+    /** A commit with message MESS, parents PA and SECPA, created at DATE and
+     *  tracking BLOBS.  Unlike the staging constructor, this neither reads
+     *  the parent commit nor the staging area, so callers that already hold
+     *  the resulting tree (e.g. fast-import) can build commits directly. */
+    Commit(String mess, String pa, String secPa, Date date,
+           TreeMap<String, String> blobs) {
+        this.msg = mess;
+        this.dad = pa;
+        this.mom = secPa;
+        this.time = new SimpleDateFormat(DATE_PATTERN).format(date);
+        this.epoch = date.getTime();
+        this.blobs = blobs;
+        this.uid = hash(this.msg, this.time, this.dad, serialize(this.blobs));
+    }
+
+    /** Return true iff my uid is the hash of my contents, as it is unless
+     *  my file has been damaged. */
+    boolean uidMatches() {
+        return uid.equals(hash(msg, time, dad, serialize(blobs)));
     }
 
     public String getMsg() {
@@ -61,6 +96,20 @@ public class Commit implements Serializable {
         return this.time;
     }
 
+    /** Return my creation time in milliseconds since the epoch, for
+     *  ordering commits without parsing their timestamps. */
+    long getEpoch() {
+        if (epoch == 0 && !dad.equals("")) {
+            try {
+                epoch = new SimpleDateFormat(DATE_PATTERN).parse(time)
+                    .getTime();
+            } catch (ParseException excp) {
+                throw error("Bad date in commit %s.", uid);
+            }
+        }
+        return epoch;
+    }
+
     public String getDad() {
         return this.dad;
     }
@@ -0,0 +1,474 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/** The commit graph, which lets history walks skip reading commits.  For
+ *  each commit it records the parents, the creation time, and a Bloom
+ *  filter of the paths the commit changed from its first parent, one
+ *  commit per line:
+ *
+ *      UID DAD MOM EPOCH FILTER
+ *
+ *  A missing parent is "-".  FILTER is the filter's bits in hex, or "-"
+ *  when the commit changed more than MAX_CHANGED_PATHS paths, in which
+ *  case it may have changed any path.  The changed paths include the
+ *  directories leading to each changed file.  A filter has BITS_PER_PATH
+ *  bits for each path and sets HASHES of them, so it wrongly reports a
+ *  path as changed about 1% of the time, and never misses one.
+ *
+ *  .gitlet/commit-graph is a header line followed by lines sorted by UID.
+ *  Like packed-refs, it is memory-mapped and searched by bisection on
+ *  byte offsets, so looking up one commit touches only a few pages, and a
+ *  walk that stops early reads no more of the graph than it visits.
+ *  Repo.updateCommit appends a line for each commit it writes to
+ *  .gitlet/commit-graph-pending, which is read whole; once that passes
+ *  MAX_PENDING bytes its lines are merged into the sorted file, which is
+ *  copied through once and replaced by a rename.  Commits that arrive by
+ *  fetch, unbundle or fast-import have no line until "commit-graph write"
+ *  adds lines for every commit that lacks one; walks read those commits
+ *  instead.
+ */
+class CommitGraph {
+
+    /** Name of the sorted graph file within a .gitlet directory. */
+    static final String FILE_NAME = "commit-graph";
+    /** Name of the file of lines not yet merged into it. */
+    static final String PENDING_NAME = "commit-graph-pending";
+    /** Size in bytes past which pending lines are merged. */
+    static final long MAX_PENDING = 1 << 16;
+    /** Filter bits per changed path. */
+    static final int BITS_PER_PATH = 10;
+    /** Bits set per path. */
+    static final int HASHES = 7;
+    /** Most changed paths a commit can have and still get a filter. */
+    static final int MAX_CHANGED_PATHS = 512;
+
+    /** First line of the sorted graph file. */
+    private static final String HEADER = "# gitlet commit-graph\n";
+    /** Mapping used when there is no sorted graph file. */
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+    /** What the graph knows of one commit. */
+    static class Entry {
+        /** A commit with first parent DAD and second parent MOM (each ""
+         *  if none), created at EPOCH milliseconds since the epoch, whose
+         *  changed paths are in FILTER, or null if unknown. */
+        Entry(String dad, String mom, long epoch, long[] filter) {
+            this.dad = dad;
+            this.mom = mom;
+            this.epoch = epoch;
+            this.filter = filter;
+        }
+
+        /** Return false if the commit certainly did not change PATH. */
+        boolean mayHaveChanged(String path) {
+            if (filter == null) {
+                return true;
+            }
+            long h = fingerprint(path);
+            for (int i = 0; i < HASHES; i += 1) {
+                long bit = bit(h, i, filter.length);
+                if ((filter[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /** First parent, or "". */
+        final String dad;
+        /** Second parent, or "". */
+        final String mom;
+        /** Creation time in milliseconds since the epoch. */
+        final long epoch;
+        /** Bloom filter of the changed paths, or null. */
+        final long[] filter;
+    }
+
+    /** The commit graph of the repository whose .gitlet directory is
+     *  DIR. */
+    CommitGraph(File dir) {
+        _file = Utils.join(dir, FILE_NAME);
+        _pendingFile = Utils.join(dir, PENDING_NAME);
+    }
+
+    /** Return the entry for the commit whose id is UID, or null if the
+     *  graph does not have it. */
+    Entry get(String uid) {
+        Entry entry = _found.get(uid);
+        if (entry == null) {
+            entry = pending().get(uid);
+        }
+        if (entry == null) {
+            ByteBuffer sorted = sorted();
+            int line = locate(sorted, uid);
+            if (line >= 0) {
+                entry = parse(text(sorted, line, endOfLine(sorted, line)));
+            }
+        }
+        if (entry != null) {
+            _found.put(uid, entry);
+        }
+        return entry;
+    }
+
+    /** Return the entry for the commit whose id is UID, made from the
+     *  commit itself if the graph does not have it. */
+    Entry lookup(String uid) {
+        Entry entry = get(uid);
+        if (entry == null) {
+            Commit commit = Main.REPO.readCommit(uid);
+            entry = new Entry(commit.getDad(), commit.getMom(),
+                              commit.getEpoch(), null);
+        }
+        return entry;
+    }
+
+    /** Record COMMIT, whose first parent is DAD (null if none). */
+    void add(Commit commit, Commit dad) {
+        try (Trace.Phase p = Trace.phase("graph.write")) {
+            Entry entry = entry(commit, dad);
+            append(line(commit.getUid(), entry));
+            if (_pending != null) {
+                _pending.put(commit.getUid(), entry);
+            }
+            if (_pendingFile.length() >= MAX_PENDING) {
+                merge(pendingLines());
+            }
+        }
+    }
+
+    /** Record every commit of the repository that the graph lacks, and
+     *  return how many there were.  Each commit and its first parent are
+     *  read without the commit cache and dropped once their line is made;
+     *  the new lines and the pending ones are then merged into the sorted
+     *  file. */
+    int write() {
+        try (Trace.Phase p = Trace.phase("graph.write")) {
+            TreeMap<String, String> lines = pendingLines();
+            int count = 0;
+            for (File file : Main.COMMITS_FOLDER.listFiles()) {
+                Commit commit = Utils.readObject(file, Commit.class);
+                String uid = commit.getUid();
+                if (lines.containsKey(uid) || locate(sorted(), uid) >= 0) {
+                    continue;
+                }
+                Commit dad = commit.getDad().equals("") ? null
+                    : Utils.readObject(
+                        Utils.join(Main.COMMITS_FOLDER,
+                                   Utils.hash(commit.getDad())),
+                        Commit.class);
+                lines.put(uid, line(uid, entry(commit, dad)));
+                count += 1;
+            }
+            merge(lines);
+            return count;
+        }
+    }
+
+    /** Return the paths COMMIT changed from DAD (null if none), with the
+     *  directories leading to them. */
+    static TreeSet<String> changedPaths(Commit commit, Commit dad) {
+        Map<String, String> now = commit.getBlobs();
+        Map<String, String> before =
+            dad == null ? new HashMap<>() : dad.getBlobs();
+        TreeSet<String> result = new TreeSet<>();
+        for (Map.Entry<String, String> file : now.entrySet()) {
+            if (!file.getValue().equals(before.get(file.getKey()))) {
+                addWithDirectories(result, file.getKey());
+            }
+        }
+        for (String name : before.keySet()) {
+            if (!now.containsKey(name)) {
+                addWithDirectories(result, name);
+            }
+        }
+        return result;
+    }
+
+    /** Add PATH and each directory leading to it to PATHS. */
+    private static void addWithDirectories(TreeSet<String> paths,
+                                           String path) {
+        paths.add(path);
+        for (int k = path.indexOf('/'); k > 0; k = path.indexOf('/', k + 1)) {
+            paths.add(path.substring(0, k));
+        }
+    }
+
+    /** Return the graph's line for ENTRY, the entry of commit UID. */
+    private static String line(String uid, Entry entry) {
+        StringBuilder line = new StringBuilder(uid);
+        line.append(' ').append(entry.dad.isEmpty() ? "-" : entry.dad)
+            .append(' ').append(entry.mom.isEmpty() ? "-" : entry.mom)
+            .append(' ').append(entry.epoch).append(' ');
+        if (entry.filter == null) {
+            line.append('-');
+        } else {
+            for (long word : entry.filter) {
+                line.append(String.format("%016x", word));
+            }
+        }
+        return line.append('\n').toString();
+    }
+
+    /** Return the entry for COMMIT, whose first parent is DAD. */
+    private static Entry entry(Commit commit, Commit dad) {
+        TreeSet<String> paths = changedPaths(commit, dad);
+        long[] filter = null;
+        if (paths.size() <= MAX_CHANGED_PATHS) {
+            filter = new long[Math.max(1, (paths.size() * BITS_PER_PATH
+                                           + 63) / 64)];
+            for (String path : paths) {
+                long h = fingerprint(path);
+                for (int i = 0; i < HASHES; i += 1) {
+                    long bit = bit(h, i, filter.length);
+                    filter[(int) (bit >>> 6)] |= 1L << bit;
+                }
+            }
+        }
+        return new Entry(commit.getDad(), commit.getMom(),
+                         commit.getEpoch(), filter);
+    }
+
+    /** Return the 64-bit FNV-1a hash of the UTF-8 bytes of PATH, from
+     *  which a filter's bit positions are derived. */
+    private static long fingerprint(String path) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : path.getBytes(StandardCharsets.UTF_8)) {
+            h = (h ^ (b & 0xff)) * 0x100000001b3L;
+        }
+        return h;
+    }
+
+    /** Return the Ith bit that a path whose fingerprint is H sets in a
+     *  filter of WORDS words, by double hashing. */
+    private static long bit(long h, int i, int words) {
+        return Long.remainderUnsigned(h + i * ((h >>> 32) | 1), 64L * words);
+    }
+
+    /** Return the entries of the pending file, reading it on first
+     *  use. */
+    private Map<String, Entry> pending() {
+        if (_pending == null) {
+            _pending = new HashMap<>();
+            if (_pendingFile.isFile()) {
+                try (Trace.Phase p = Trace.phase("graph.read")) {
+                    String text = Utils.readContentsAsString(_pendingFile);
+                    for (String line : text.split("\n")) {
+                        Entry entry = parse(line);
+                        if (entry != null) {
+                            _pending.put(line.substring(0, line.indexOf(' ')),
+                                         entry);
+                        }
+                    }
+                }
+            }
+        }
+        return _pending;
+    }
+
+    /** Return the lines of the pending file by commit uid. */
+    private TreeMap<String, String> pendingLines() {
+        TreeMap<String, String> result = new TreeMap<>();
+        for (Map.Entry<String, Entry> entry : pending().entrySet()) {
+            result.put(entry.getKey(), line(entry.getKey(), entry.getValue()));
+        }
+        return result;
+    }
+
+    /** Return the contents of the sorted graph file, mapped on first use,
+     *  or nothing if there is no such file or it lacks the header. */
+    private ByteBuffer sorted() {
+        if (_sorted == null) {
+            _sorted = EMPTY;
+            if (_file.isFile()) {
+                try (Trace.Phase p = Trace.phase("graph.read");
+                     FileChannel channel =
+                         FileChannel.open(_file.toPath(),
+                                          StandardOpenOption.READ)) {
+                    _sorted = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                                          channel.size());
+                } catch (IOException excp) {
+                    throw new IllegalArgumentException(excp.getMessage());
+                }
+                byte[] header = bytes(HEADER);
+                for (int i = 0; i < header.length; i += 1) {
+                    if (i >= _sorted.limit() || _sorted.get(i) != header[i]) {
+                        _sorted = EMPTY;
+                        break;
+                    }
+                }
+            }
+        }
+        return _sorted;
+    }
+
+    /** Return the offset of the line of SORTED for commit UID, or -1 if
+     *  there is none. */
+    private static int locate(ByteBuffer sorted, String uid) {
+        byte[] key = bytes(uid);
+        int lo = Math.min(HEADER.length(), sorted.limit());
+        int hi = sorted.limit();
+        while (lo < hi) {
+            int mid = lo + (hi - lo) / 2;
+            while (mid > lo && sorted.get(mid - 1) != '\n') {
+                mid -= 1;
+            }
+            int c = compareUid(sorted, mid, key);
+            if (c == 0) {
+                return mid;
+            } else if (c < 0) {
+                lo = endOfLine(sorted, mid) + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return -1;
+    }
+
+    /** Compare the uid on the line of SORTED starting at LINE with UID,
+     *  byte by byte, returning <0, 0 or >0. */
+    private static int compareUid(ByteBuffer sorted, int line, byte[] uid) {
+        int p = line;
+        for (int i = 0; i < uid.length; i += 1, p += 1) {
+            if (p == sorted.limit() || sorted.get(p) == ' ') {
+                return -1;
+            }
+            int c = Integer.compare(sorted.get(p) & 0xff, uid[i] & 0xff);
+            if (c != 0) {
+                return c;
+            }
+        }
+        return p == sorted.limit() || sorted.get(p) == ' ' ? 0 : 1;
+    }
+
+    /** Return the offset of the newline ending the line at LINE in
+     *  SORTED. */
+    private static int endOfLine(ByteBuffer sorted, int line) {
+        int p = line;
+        while (p < sorted.limit() && sorted.get(p) != '\n') {
+            p += 1;
+        }
+        return p;
+    }
+
+    /** Return the bytes of SORTED from START to END as a String. */
+    private static String text(ByteBuffer sorted, int start, int end) {
+        byte[] result = new byte[end - start];
+        sorted.get(start, result);
+        return new String(result, StandardCharsets.UTF_8);
+    }
+
+    /** Replace the sorted graph file by its lines merged with LINES, the
+     *  lines of further commits by uid, through a rename so that readers
+     *  see either the old file or the new one, and empty the pending
+     *  file, whose lines LINES must include. */
+    private void merge(TreeMap<String, String> lines) {
+        ByteBuffer sorted = sorted();
+        File temp = new File(_file.getPath() + ".lock");
+        try (OutputStream out = new BufferedOutputStream(
+                 new FileOutputStream(temp), 1 << 16)) {
+            out.write(bytes(HEADER));
+            int line = Math.min(HEADER.length(), sorted.limit());
+            Iterator<Map.Entry<String, String>> more =
+                lines.entrySet().iterator();
+            Map.Entry<String, String> next = more.hasNext() ? more.next()
+                : null;
+            while (line < sorted.limit() || next != null) {
+                int c = line >= sorted.limit() ? 1 : next == null ? -1
+                    : compareUid(sorted, line, bytes(next.getKey()));
+                if (c <= 0) {
+                    int end = endOfLine(sorted, line);
+                    byte[] text = new byte[end - line];
+                    sorted.get(line, text);
+                    out.write(text);
+                    out.write('\n');
+                    line = end + 1;
+                }
+                if (c >= 0) {
+                    if (c > 0) {
+                        out.write(bytes(next.getValue()));
+                    }
+                    next = more.hasNext() ? more.next() : null;
+                }
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        try {
+            Files.move(temp.toPath(), _file.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        _pendingFile.delete();
+        _sorted = null;
+        _pending = null;
+    }
+
+    /** Return the entry on LINE of a graph file, or null if it is not
+     *  whole. */
+    private static Entry parse(String line) {
+        String[] fields = line.split(" ");
+        if (fields.length != 5) {
+            return null;
+        }
+        long[] filter = null;
+        if (!fields[4].equals("-")) {
+            filter = new long[fields[4].length() / 16];
+            for (int i = 0; i < filter.length; i += 1) {
+                filter[i] = Long.parseUnsignedLong(
+                    fields[4].substring(16 * i, 16 * i + 16), 16);
+            }
+        }
+        return new Entry(fields[1].equals("-") ? "" : fields[1],
+                         fields[2].equals("-") ? "" : fields[2],
+                         Long.parseLong(fields[3]), filter);
+    }
+
+    /** Append TEXT to the pending file. */
+    private void append(String text) {
+        if (text.isEmpty()) {
+            return;
+        }
+        try (FileOutputStream out =
+                 new FileOutputStream(_pendingFile, true)) {
+            out.write(text.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Return the UTF-8 bytes of S. */
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** The sorted graph file. */
+    private final File _file;
+    /** The file of lines not yet merged into it. */
+    private final File _pendingFile;
+    /** Contents of the sorted file, or null if not yet mapped. */
+    private ByteBuffer _sorted;
+    /** Entries of the pending file by commit uid, or null if not yet
+     *  read. */
+    private Map<String, Entry> _pending;
+    /** Entries looked up so far, by commit uid. */
+    private final HashMap<String, Entry> _found = new HashMap<>();
+}
@@ -0,0 +1,43 @@
+package gitlet;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Properties;
+
+/** Repository settings, kept as key=value lines in .gitlet/config. */
+class Config {
+
+    /** Name of the config file within a .gitlet directory. */
+    static final String FILE_NAME = "config";
+
+    /** Return the settings of the repository whose .gitlet directory is
+     *  DIR, which are empty if it has no config. */
+    static Properties read(File dir) {
+        Properties result = new Properties();
+        File file = Utils.join(dir, FILE_NAME);
+        if (file.isFile()) {
+            try (Reader in = new FileReader(file)) {
+                result.load(in);
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+        }
+        return result;
+    }
+
+    /** Set KEY to VALUE in the config of the current repository. */
+    static void set(String key, String value) {
+        Properties settings = read(Main.COMMON_FOLDER);
+        settings.setProperty(key, value);
+        try (Writer out =
+                 new FileWriter(Utils.join(Main.COMMON_FOLDER, FILE_NAME))) {
+            settings.store(out, null);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+}
@@ -0,0 +1,392 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import static gitlet.Utils.hash;
+
+/** The fast-import command, which builds commits straight from a stream
+ *  instead of going through add and commit.  The stream is a sequence of
+ *  the following commands, where blank lines are ignored:
+ *
+ *      blob
+ *      mark :N
+ *      data COUNT
+ *      COUNT raw bytes of file contents
+ *
+ *      commit BRANCH
+ *      mark :N
+ *      time SECONDS
+ *      data COUNT
+ *      COUNT raw bytes of log message
+ *      from REF
+ *      merge REF
+ *      M REF PATH
+ *      D PATH
+ *      deleteall
+ *
+ *      reset BRANCH
+ *      from REF
+ *
+ *  A REF is either a mark (:N) set earlier in the stream or a full id.
+ *  The mark, time, from, merge and file lines of a commit are optional;
+ *  without "from" a commit continues from BRANCH's latest commit, and
+ *  without "time" it is stamped with the current time.
+ *
+ *  The staging area is never consulted.  Parsing runs on the calling thread
+ *  and hands finished blobs and commits to a few writer threads, which drain
+ *  them in batches.  Branches are only updated once every object is on disk.
+ */
+class FastImport {
+
+    /** Number of writer threads. */
+    private static final int WRITERS =
+        Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+    /** Largest number of files a writer takes off the queue at once. */
+    private static final int BATCH = 256;
+    /** Capacity of the write queue, bounding memory held by pending writes. */
+    private static final int CAPACITY = 4096;
+
+    /** A pending write of CONTENTS, either a byte[] or a Commit, to FILE. */
+    private static class Write {
+        /** A write of CONTENTS to FILE. */
+        Write(File file, Object contents) {
+            this.file = file;
+            this.contents = contents;
+        }
+        /** Destination. */
+        private final File file;
+        /** Blob bytes or Commit to serialize. */
+        private final Object contents;
+    }
+
+    /** Queue entry telling writers that the stream has ended. */
+    private static final Write DONE = new Write(null, null);
+
+    /** An importer reading commands from IN. */
+    FastImport(InputStream in) {
+        _in = new BufferedInputStream(in, 1 << 16);
+    }
+
+    /** Import the stream in FILENAME, or standard input if FILENAME is
+     *  null, and report what was written. */
+    static void run(String fileName) {
+        try (InputStream in = fileName == null
+             ? System.in : new FileInputStream(fileName)) {
+            FastImport importer = new FastImport(in);
+            importer.importAll();
+            System.out.println("Imported " + importer._commitCount
+                               + " commits and " + importer._blobCount
+                               + " blobs.");
+        } catch (FileNotFoundException excp) {
+            System.out.println("File does not exist.");
+            System.exit(0);
+        } catch (IOException | GitletException excp) {
+            System.out.println(excp.getMessage());
+            System.exit(0);
+        } catch (IllegalArgumentException excp) {
+            System.out.println("Malformed fast-import stream.");
+            System.exit(0);
+        }
+    }
+
+    /** Parse the whole stream, wait for the writers and then move the
+     *  branches it names. */
+    void importAll() throws IOException {
+        ArrayList<Thread> writers = new ArrayList<>();
+        for (int i = 0; i < WRITERS; i += 1) {
+            Thread writer = new Thread(this::drain, "fast-import-writer");
+            writer.start();
+            writers.add(writer);
+        }
+        try {
+            String line;
+            while ((line = nextLine()) != null) {
+                if (line.equals("blob")) {
+                    parseBlob();
+                } else if (line.startsWith("commit ")) {
+                    parseCommit(line.substring("commit ".length()));
+                } else if (line.startsWith("reset ")) {
+                    parseReset(line.substring("reset ".length()));
+                } else {
+                    throw Utils.error("Unsupported fast-import command: %s",
+                                      line);
+                }
+            }
+        } finally {
+            enqueue(DONE);
+            for (Thread writer : writers) {
+                try {
+                    writer.join();
+                } catch (InterruptedException excp) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+        if (_failure != null) {
+            throw Utils.error("Fast-import write failed: %s",
+                              _failure.getMessage());
+        }
+        for (Map.Entry<String, Commit> branch : _branches.entrySet()) {
+            Main.REPO.updateBranch(branch.getKey(), branch.getValue(),
+                                   "fast-import");
+        }
+    }
+
+    /** Writer loop: take batches of writes off the queue until DONE. */
+    private void drain() {
+        ArrayList<Write> batch = new ArrayList<>(BATCH);
+        while (true) {
+            batch.clear();
+            try {
+                batch.add(_queue.take());
+            } catch (InterruptedException excp) {
+                return;
+            }
+            _queue.drainTo(batch, BATCH - 1);
+            for (Write write : batch) {
+                if (write == DONE) {
+                    enqueue(DONE);
+                    return;
+                }
+                try {
+                    if (write.contents instanceof Commit) {
+                        Utils.writeObject(write.file, (Commit) write.contents);
+                    } else if (!write.file.isFile()) {
+                        Utils.writeContents(write.file, write.contents);
+                    }
+                } catch (IllegalArgumentException excp) {
+                    _failure = excp;
+                }
+            }
+        }
+    }
+
+    /** Hand WRITE to the writers, waiting while the queue is full. */
+    private void enqueue(Write write) {
+        try {
+            _queue.put(write);
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+            throw Utils.error("Fast-import interrupted.");
+        }
+    }
+
+    /** Parse the body of a blob command. */
+    private void parseBlob() throws IOException {
+        String mark = optional("mark ");
+        byte[] contents = readData();
+        String id = hash(contents);
+        File file = Utils.join(Main.BLOBS_FOLDER, id);
+        if (_written.add(id) && !file.isFile()) {
+            enqueue(new Write(file, contents));
+            _blobCount += 1;
+        }
+        if (mark != null) {
+            _marks.put(mark, id);
+        }
+    }
+
+    /** Parse the body of a commit command on BRANCH. */
+    private void parseCommit(String branch) throws IOException {
+        String mark = optional("mark ");
+        String seconds = optional("time ");
+        String msg = new String(readData(), StandardCharsets.UTF_8);
+        String from = optional("from ");
+        String merge = optional("merge ");
+        Commit parent = from == null ? tip(branch) : commit(from);
+        String mom = merge == null ? "" : commit(merge).getUid();
+        TreeMap<String, String> blobs = new TreeMap<>(parent.getBlobs());
+        String line;
+        while ((line = nextLine()) != null) {
+            if (line.startsWith("M ")) {
+                int space = line.indexOf(' ', 2);
+                if (space < 0) {
+                    throw Utils.error("Malformed file command: %s", line);
+                }
+                String id = blob(line.substring(2, space));
+                blobs.put(line.substring(space + 1), id);
+            } else if (line.startsWith("D ")) {
+                blobs.remove(line.substring(2));
+            } else if (line.equals("deleteall")) {
+                blobs.clear();
+            } else {
+                _lookahead = line;
+                break;
+            }
+        }
+        Date date;
+        try {
+            date = seconds == null
+                ? new Date() : new Date(Long.parseLong(seconds) * 1000);
+        } catch (NumberFormatException excp) {
+            throw Utils.error("Malformed time: %s", seconds);
+        }
+        Commit made = new Commit(msg, parent.getUid(), mom, date, blobs);
+        File file = Utils.join(Main.COMMITS_FOLDER, hash(made.getUid()));
+        if (_commits.put(made.getUid(), made) == null && !file.isFile()) {
+            enqueue(new Write(file, made));
+            _commitCount += 1;
+        }
+        if (mark != null) {
+            _marks.put(mark, made.getUid());
+        }
+        _branches.put(branch, made);
+    }
+
+    /** Parse the body of a reset command on BRANCH. */
+    private void parseReset(String branch) throws IOException {
+        String from = optional("from ");
+        if (from == null) {
+            throw Utils.error("Reset of %s needs a from line.", branch);
+        }
+        _branches.put(branch, commit(from));
+    }
+
+    /** Return the latest commit on BRANCH, looking first at this stream,
+     *  then at the repository, and defaulting to the initial commit. */
+    private Commit tip(String branch) throws IOException {
+        Commit tip = _branches.get(branch);
+        if (tip == null) {
+            if (Main.REPO.isBranch(branch)) {
+                tip = Main.REPO.getHeadOfBranch(branch);
+            } else {
+                tip = new Commit("initial commit", "", "");
+            }
+        }
+        return tip;
+    }
+
+    /** Return the commit denoted by REF. */
+    private Commit commit(String ref) {
+        String uid = resolve(ref);
+        Commit found = _commits.get(uid);
+        if (found == null) {
+            File file = Utils.join(Main.COMMITS_FOLDER, hash(uid));
+            if (!file.isFile()) {
+                throw Utils.error("No commit with id %s.", ref);
+            }
+            found = Utils.readObject(file, Commit.class);
+            _commits.put(uid, found);
+        }
+        return found;
+    }
+
+    /** Return the id of the blob denoted by REF. */
+    private String blob(String ref) {
+        String id = resolve(ref);
+        if (!_written.contains(id)
+            && !Utils.join(Main.BLOBS_FOLDER, id).isFile()) {
+            throw Utils.error("No blob with id %s.", ref);
+        }
+        return id;
+    }
+
+    /** Return the id named by REF, which is a mark or a full id. */
+    private String resolve(String ref) {
+        if (!ref.startsWith(":")) {
+            return ref;
+        }
+        String id = _marks.get(ref);
+        if (id == null) {
+            throw Utils.error("Unknown mark %s.", ref);
+        }
+        return id;
+    }
+
+    /** If the next line starts with PREFIX, consume it and return the rest
+     *  of it; otherwise return null and leave it for the next reader. */
+    private String optional(String prefix) throws IOException {
+        String line = nextLine();
+        if (line != null && line.startsWith(prefix)) {
+            return line.substring(prefix.length());
+        }
+        _lookahead = line;
+        return null;
+    }
+
+    /** Read a "data COUNT" line and the COUNT bytes following it. */
+    private byte[] readData() throws IOException {
+        String count = optional("data ");
+        if (count == null) {
+            throw Utils.error("Expected a data command.");
+        }
+        int size;
+        try {
+            size = Integer.parseInt(count);
+        } catch (NumberFormatException excp) {
+            throw Utils.error("Malformed data length: %s", count);
+        }
+        if (size < 0) {
+            throw Utils.error("Malformed data length: %s", count);
+        }
+        byte[] result = _in.readNBytes(size);
+        if (result.length != size) {
+            throw Utils.error("Unexpected end of fast-import stream.");
+        }
+        return result;
+    }
+
+    /** Return the next non-blank line without its terminator, or null at
+     *  the end of the stream. */
+    private String nextLine() throws IOException {
+        if (_lookahead != null) {
+            String line = _lookahead;
+            _lookahead = null;
+            return line;
+        }
+        while (true) {
+            _line.reset();
+            int c;
+            while ((c = _in.read()) != -1 && c != '\n') {
+                _line.write(c);
+            }
+            if (c == -1 && _line.size() == 0) {
+                return null;
+            }
+            if (_line.size() > 0) {
+                return _line.toString(StandardCharsets.UTF_8);
+            }
+        }
+    }
+
+    /** Source of the stream. */
+    private final BufferedInputStream _in;
+    /** Buffer for the line being read. */
+    private final ByteArrayOutputStream _line = new ByteArrayOutputStream();
+    /** Line read ahead of the parser, or null. */
+    private String _lookahead;
+    /** Writes waiting for a writer. */
+    private final BlockingQueue<Write> _queue =
+        new ArrayBlockingQueue<>(CAPACITY);
+    /** First failure reported by a writer, or null. */
+    private volatile RuntimeException _failure;
+    /** Ids bound to marks. */
+    private final HashMap<String, String> _marks = new HashMap<>();
+    /** Commits made or looked up so far, by uid. */
+    private final HashMap<String, Commit> _commits = new HashMap<>();
+    /** Blob ids seen so far, written or already on disk. */
+    private final HashSet<String> _written = new HashSet<>();
+    /** Branches moved by the stream, with their new heads. */
+    private final LinkedHashMap<String, Commit> _branches =
+        new LinkedHashMap<>();
+    /** Number of commits written, leaving out those already on disk. */
+    private int _commitCount;
+    /** Number of blobs written, leaving out those already on disk. */
+    private int _blobCount;
+}
@@ -0,0 +1,444 @@
+package gitlet;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/** The file system monitor: an optional background process that watches
+ *  the working directory, so that commands need look only at the paths
+ *  that changed since they last looked, instead of at every file.
+ *
+ *      fsmonitor start     start the monitor for this repository
+ *      fsmonitor stop      stop it
+ *      fsmonitor status    report whether it is running
+ *
+ *  The monitor registers every directory of the working directory (but
+ *  not .gitlet) with a WatchService and appends what it hears to the
+ *  journal, .gitlet/fsmonitor/journal, one line per event:
+ *
+ *      P PATH      something happened to PATH (a file or directory)
+ *      C NAME      cookie NAME appeared
+ *      !           events were lost
+ *
+ *  .gitlet/fsmonitor/daemon holds the monitor's process id and an
+ *  instance name, which changes whenever the journal is started afresh
+ *  (when the monitor starts, and when the journal outgrows
+ *  MAX_JOURNAL_BYTES).
+ *
+ *  A command asks for the files of the working directory through
+ *  snapshot().  That keeps, in .gitlet/fsmonitor/snapshot, every file's
+ *  path and content id as of some offset in the journal.  To be sure
+ *  that the journal has caught up with the file system, it creates a
+ *  cookie in .gitlet/fsmonitor/cookies, which the monitor also watches,
+ *  and reads the journal up to the cookie's line; then it re-examines
+ *  only the paths named since the snapshot's offset.  Like a scan, the
+ *  snapshot leaves out ignored files, and a change to .gitletignore
+ *  means it is rebuilt.  A new instance, a lost event, a monitor that is
+ *  not running or a cookie that does not appear within
+ *  COOKIE_WAIT_MILLIS all mean the snapshot cannot be trusted, and
+ *  callers scan the whole directory as they would without a monitor.
+ */
+class FsMonitor {
+
+    /** Folder holding the monitor's files. */
+    static final File FOLDER = Utils.join(Main.GITLET_FOLDER, "fsmonitor");
+    /** Largest journal kept before it is started afresh. */
+    static final long MAX_JOURNAL_BYTES = 1 << 22;
+    /** How long a command waits for its cookie before scanning. */
+    static final long COOKIE_WAIT_MILLIS = 2000;
+
+    /** File holding the monitor's process id and instance name. */
+    private static final File DAEMON = Utils.join(FOLDER, "daemon");
+    /** The journal of events. */
+    private static final File JOURNAL = Utils.join(FOLDER, "journal");
+    /** The last snapshot of the working directory. */
+    private static final File SNAPSHOT = Utils.join(FOLDER, "snapshot");
+    /** Folder of cookies. */
+    private static final File COOKIES = Utils.join(FOLDER, "cookies");
+
+    /** Run fsmonitor with ARGS, which starts with "fsmonitor". */
+    static void run(String... args) throws IOException {
+        String op = args.length == 2 ? args[1] : "";
+        if (op.equals("start")) {
+            start();
+        } else if (op.equals("stop")) {
+            stop();
+        } else if (op.equals("status")) {
+            System.out.println(running() == null
+                               ? "The file system monitor is not running."
+                               : "The file system monitor is running.");
+        } else if (op.equals("run")) {
+            serve();
+        } else {
+            System.out.println("Incorrect operands.");
+            System.exit(0);
+        }
+    }
+
+    /** Return the files of the working directory, as WorkDir.files()
+     *  names them, with the ids of their contents, or null if there is no
+     *  monitor whose journal can be trusted.  The result is computed once
+     *  per command, so callers must ask before changing any file. */
+    static synchronized TreeMap<String, String> snapshot() {
+        if (!_asked) {
+            _asked = true;
+            try (Trace.Phase p = Trace.phase("fsmonitor.sync")) {
+                _snapshot = sync();
+            }
+        }
+        return _snapshot;
+    }
+
+    /** Start the monitor, unless it is running, and wait until it is
+     *  watching. */
+    private static void start() throws IOException {
+        if (running() != null) {
+            System.out.println("The file system monitor is already running.");
+            System.exit(0);
+        }
+        DAEMON.delete();
+        String java = Path.of(System.getProperty("java.home"), "bin", "java")
+            .toString();
+        new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                           "gitlet.Main", "fsmonitor", "run")
+            .directory(Main.CWD)
+            .redirectInput(ProcessBuilder.Redirect.from(new File("/dev/null")))
+            .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+            .redirectError(ProcessBuilder.Redirect.DISCARD)
+            .start();
+        long deadline = System.currentTimeMillis() + 10000;
+        while (running() == null && System.currentTimeMillis() < deadline) {
+            pause(10);
+        }
+    }
+
+    /** Stop the monitor, if it is running. */
+    private static void stop() {
+        String[] daemon = running();
+        DAEMON.delete();
+        SNAPSHOT.delete();
+        if (daemon != null) {
+            ProcessHandle.of(Long.parseLong(daemon[0]))
+                .ifPresent(ProcessHandle::destroy);
+        }
+    }
+
+    /** Return the process id and instance name of the running monitor, or
+     *  null if there is none. */
+    private static String[] running() {
+        if (!DAEMON.isFile()) {
+            return null;
+        }
+        String[] daemon = Utils.readContentsAsString(DAEMON).split(" ");
+        if (daemon.length != 2) {
+            return null;
+        }
+        Optional<ProcessHandle> process;
+        try {
+            process = ProcessHandle.of(Long.parseLong(daemon[0]));
+        } catch (NumberFormatException excp) {
+            return null;
+        }
+        return process.isPresent() && process.get().isAlive() ? daemon : null;
+    }
+
+    /** Watch the working directory until told to stop. */
+    private static void serve() throws IOException {
+        COOKIES.mkdirs();
+        Path root = Main.CWD.toPath().toAbsolutePath().normalize();
+        Path cookies = COOKIES.toPath().toAbsolutePath().normalize();
+        String pid = Long.toString(ProcessHandle.current().pid());
+        try (WatchService watcher =
+                 FileSystems.getDefault().newWatchService()) {
+            HashMap<WatchKey, Path> dirs = new HashMap<>();
+            register(watcher, dirs, root, root, null);
+            dirs.put(cookies.register(watcher,
+                                      StandardWatchEventKinds.ENTRY_CREATE),
+                     cookies);
+            String instance = restart(pid);
+            while (owns(pid, instance)) {
+                WatchKey key;
+                try {
+                    key = watcher.poll(1, TimeUnit.SECONDS);
+                } catch (InterruptedException | ClosedWatchServiceException
+                         excp) {
+                    break;
+                }
+                if (key == null) {
+                    continue;
+                }
+                StringBuilder lines = new StringBuilder();
+                Path dir = dirs.get(key);
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW
+                        || dir == null) {
+                        lines.append("!\n");
+                        continue;
+                    }
+                    Path path = dir.resolve((Path) event.context());
+                    if (dir.equals(cookies)) {
+                        lines.append("C ").append(path.getFileName())
+                            .append('\n');
+                        path.toFile().delete();
+                        continue;
+                    }
+                    String name = relative(root, path);
+                    if (name.equals(".gitlet")
+                        || name.startsWith(".gitlet/")) {
+                        continue;
+                    }
+                    lines.append("P ").append(name).append('\n');
+                    if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE
+                        && path.toFile().isDirectory()) {
+                        register(watcher, dirs, root, path, lines);
+                    }
+                }
+                if (!key.reset()) {
+                    dirs.remove(key);
+                }
+                append(lines.toString());
+                if (JOURNAL.length() > MAX_JOURNAL_BYTES) {
+                    instance = restart(pid);
+                }
+            }
+        }
+    }
+
+    /** Start a new instance of the journal for the monitor whose process
+     *  id is PID, returning its name. */
+    private static String restart(String pid) {
+        String instance = Long.toString(System.currentTimeMillis(), 36)
+            + Long.toString(System.nanoTime() & 0xffffff, 36);
+        Utils.writeContents(JOURNAL, "");
+        Utils.writeContents(DAEMON, pid + " " + instance);
+        return instance;
+    }
+
+    /** Return true iff the monitor with process id PID and instance
+     *  INSTANCE is still the repository's monitor. */
+    private static boolean owns(String pid, String instance) {
+        return DAEMON.isFile() && Utils.readContentsAsString(DAEMON)
+            .equals(pid + " " + instance);
+    }
+
+    /** Register DIR and the directories under it, other than the .gitlet
+     *  directory under ROOT, with WATCHER, recording each in DIRS.  If
+     *  LINES is not null, add a line to it for every file found, since
+     *  they may have been made before their directory was watched. */
+    private static void register(WatchService watcher,
+                                 HashMap<WatchKey, Path> dirs, Path root,
+                                 Path dir, StringBuilder lines)
+        throws IOException {
+        if (dir.equals(root.resolve(".gitlet"))) {
+            return;
+        }
+        dirs.put(dir.register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                              StandardWatchEventKinds.ENTRY_DELETE,
+                              StandardWatchEventKinds.ENTRY_MODIFY),
+                 dir);
+        File[] files = dir.toFile().listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.isDirectory()) {
+                register(watcher, dirs, root, file.toPath(), lines);
+            } else if (lines != null) {
+                lines.append("P ").append(relative(root, file.toPath()))
+                    .append('\n');
+            }
+        }
+    }
+
+    /** Return PATH relative to ROOT, with '/' separators. */
+    private static String relative(Path root, Path path) {
+        return root.relativize(path).toString()
+            .replace(File.separatorChar, '/');
+    }
+
+    /** Append TEXT to the journal. */
+    private static void append(String text) {
+        if (text.isEmpty()) {
+            return;
+        }
+        try (FileOutputStream out = new FileOutputStream(JOURNAL, true)) {
+            out.write(text.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Bring the snapshot up to date with the journal and return it, or
+     *  return null if it cannot be. */
+    private static TreeMap<String, String> sync() {
+        String[] daemon = running();
+        if (daemon == null) {
+            return null;
+        }
+        String instance = daemon[1];
+        TreeMap<String, String> files = new TreeMap<>();
+        long offset = readSnapshot(instance, files);
+
+        String cookie =
+            ProcessHandle.current().pid() + "-" + System.nanoTime();
+        File cookieFile = Utils.join(COOKIES, cookie);
+        try {
+            cookieFile.createNewFile();
+        } catch (IOException excp) {
+            return null;
+        }
+        LinkedHashSet<String> dirty = new LinkedHashSet<>();
+        long end = readJournal(instance, offset, cookie, dirty);
+        cookieFile.delete();
+        if (end < 0) {
+            return null;
+        }
+        if (offset < 0 || dirty.contains("!")
+            || dirty.contains(Ignore.FILE_NAME)) {
+            files.clear();
+            for (String path : WorkDir.scan()) {
+                files.put(path, WorkDir.contentId(path));
+            }
+        } else {
+            for (String path : dirty) {
+                refresh(files, path);
+            }
+        }
+        writeSnapshot(instance, end, files);
+        return files;
+    }
+
+    /** Make FILES, a snapshot, right about PATH and anything under it.  A
+     *  change to a nested .gitlet refreshes the directory holding it. */
+    private static void refresh(TreeMap<String, String> files, String path) {
+        if (path.endsWith("/.gitlet")) {
+            path = path.substring(0, path.length() - "/.gitlet".length());
+        }
+        String prefix = path + "/";
+        files.remove(path);
+        files.subMap(prefix, prefix + Character.MAX_VALUE).clear();
+        File file = Utils.join(Main.CWD, path);
+        if (WorkDir.nested(path)) {
+            return;
+        } else if (file.isFile() && !Ignore.excludes(path, false)) {
+            files.put(path, WorkDir.contentId(path));
+        } else if (file.isDirectory() && !Ignore.excludes(path, true)) {
+            for (String under : WorkDir.scan(path)) {
+                files.put(under, WorkDir.contentId(under));
+            }
+        }
+    }
+
+    /** Read the journal of INSTANCE from OFFSET (or from the start if
+     *  OFFSET is negative) to the line of COOKIE, adding each path named
+     *  to DIRTY, and "!" if events were lost.  Return the offset after
+     *  the cookie's line, or -1 if it did not appear in time or the
+     *  instance changed. */
+    private static long readJournal(String instance, long offset,
+                                    String cookie,
+                                    LinkedHashSet<String> dirty) {
+        long deadline = System.currentTimeMillis() + COOKIE_WAIT_MILLIS;
+        long at = Math.max(0, offset);
+        String want = "C " + cookie;
+        while (System.currentTimeMillis() < deadline) {
+            String[] daemon = running();
+            if (daemon == null || !daemon[1].equals(instance)) {
+                return -1;
+            }
+            byte[] text;
+            try (RandomAccessFile journal = new RandomAccessFile(JOURNAL,
+                                                                 "r")) {
+                if (journal.length() < at) {
+                    return -1;
+                }
+                text = new byte[(int) (journal.length() - at)];
+                journal.seek(at);
+                journal.readFully(text);
+            } catch (IOException excp) {
+                return -1;
+            }
+            int start = 0;
+            for (int i = 0; i < text.length; i += 1) {
+                if (text[i] != '\n') {
+                    continue;
+                }
+                String line =
+                    new String(text, start, i - start, StandardCharsets.UTF_8);
+                start = i + 1;
+                if (line.startsWith("P ")) {
+                    dirty.add(line.substring(2));
+                } else if (line.equals("!")) {
+                    dirty.add("!");
+                } else if (line.equals(want)) {
+                    return at + start;
+                }
+            }
+            at += start;
+            pause(1);
+        }
+        return -1;
+    }
+
+    /** Read the snapshot of INSTANCE into FILES and return its offset in
+     *  the journal, or return -1 if there is no such snapshot. */
+    private static long readSnapshot(String instance,
+                                     TreeMap<String, String> files) {
+        if (!SNAPSHOT.isFile()) {
+            return -1;
+        }
+        String[] lines = Utils.readContentsAsString(SNAPSHOT).split("\n");
+        String[] header = lines[0].split(" ");
+        if (header.length != 2 || !header[0].equals(instance)) {
+            return -1;
+        }
+        for (int i = 1; i < lines.length; i += 1) {
+            String[] fields = lines[i].split(" ", 2);
+            if (fields.length == 2) {
+                files.put(fields[1], fields[0]);
+            }
+        }
+        return Long.parseLong(header[1]);
+    }
+
+    /** Write FILES as the snapshot of INSTANCE at OFFSET in the
+     *  journal. */
+    private static void writeSnapshot(String instance, long offset,
+                                      TreeMap<String, String> files) {
+        StringBuilder out = new StringBuilder();
+        out.append(instance).append(' ').append(offset).append('\n');
+        for (Map.Entry<String, String> file : files.entrySet()) {
+            out.append(file.getValue()).append(' ').append(file.getKey())
+                .append('\n');
+        }
+        Utils.writeContents(SNAPSHOT, out.toString());
+    }
+
+    /** Sleep for MILLIS milliseconds. */
+    private static void pause(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** True once snapshot() has been called. */
+    private static boolean _asked;
+    /** The result of snapshot(). */
+    private static TreeMap<String, String> _snapshot;
+}
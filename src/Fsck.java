@@ -0,0 +1,190 @@
+package gitlet;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** The fsck command, which checks the integrity of the repository.  Every
+ *  blob is re-hashed and every commit re-read and its uid recomputed, on
+ *  the Workers pool, largest files first so that the threads finish
+ *  together; blobs are streamed rather than read whole.  Only the
+ *  parents of each commit and one commit tracking each blob are kept, and
+ *  the cross-checks that follow (missing parents, reachability from
+ *  branches) run over those in memory.  Problems are reported one per
+ *  line, sorted:
+ *
+ *      corrupt blob ID          the blob's contents do not hash to ID
+ *      corrupt commit FILE      the commit file cannot be read, or does
+ *                               not hash to its uid or name
+ *      missing blob ID in UID   commit UID (one of those) tracks a blob
+ *                               not present
+ *      missing commit ID parent of UID
+ *      broken branch NAME       NAME's head is not a good commit
+ *      dangling commit UID      UID is reachable from no branch, reflog
+ *                               entry or stash, and is not the parent of
+ *                               another such commit
+ *      dangling blob ID         no commit tracks ID
+ */
+class Fsck {
+
+    /** Check the repository and print what is wrong with it. */
+    static void run() {
+        Fsck fsck = new Fsck();
+        fsck.verify();
+        fsck.crossCheck();
+        for (String problem : new TreeSet<>(fsck._problems)) {
+            System.out.println(problem);
+        }
+        System.out.println("Checked " + fsck._parents.size() + " commits and "
+                           + fsck._blobs.size() + " blobs ("
+                           + fsck._bytes.get() + " bytes).");
+    }
+
+    /** Check every object file on its own. */
+    private void verify() {
+        try (Trace.Phase p = Trace.phase("fsck.verify")) {
+            ArrayList<File> files = new ArrayList<>();
+            files.addAll(Arrays.asList(Main.BLOBS_FOLDER.listFiles()));
+            files.addAll(Arrays.asList(Main.COMMITS_FOLDER.listFiles()));
+            long[] lengths = new long[files.size()];
+            ArrayList<Integer> order = new ArrayList<>();
+            for (int i = 0; i < lengths.length; i += 1) {
+                lengths[i] = files.get(i).length();
+                order.add(i);
+            }
+            order.sort(Comparator.comparingLong((Integer i) -> -lengths[i]));
+            Workers.forEach(order, i -> {
+                File file = files.get(i);
+                _bytes.addAndGet(lengths[i]);
+                if (file.getParentFile().getName().equals("blobs")) {
+                    verifyBlob(file);
+                } else {
+                    verifyCommit(file);
+                }
+            });
+        }
+    }
+
+    /** Check that the contents of blob FILE hash to its name. */
+    private void verifyBlob(File file) {
+        String id = file.getName();
+        try (InputStream in = new FileInputStream(file)) {
+            String actual =
+                Utils.toHex(HashFunction.current().digest(in));
+            if (actual.equals(id)) {
+                _blobs.add(id);
+                return;
+            }
+        } catch (IOException excp) {
+            /* Reported as corrupt below. */
+        }
+        _problems.add("corrupt blob " + id);
+    }
+
+    /** Check that commit FILE can be read, that its name is the hash of
+     *  its uid and that its uid is the hash of its contents, and record
+     *  its parents and blobs. */
+    private void verifyCommit(File file) {
+        Commit commit;
+        try {
+            commit = Utils.deserialize(Utils.readContents(file),
+                                       Commit.class);
+        } catch (IllegalArgumentException excp) {
+            _problems.add("corrupt commit " + file.getName());
+            return;
+        }
+        String uid = commit.getUid();
+        if (uid == null || !Utils.hash(uid).equals(file.getName())
+            || !commit.uidMatches()) {
+            _problems.add("corrupt commit " + file.getName());
+            return;
+        }
+        _parents.put(uid, new String[] {commit.getDad(), commit.getMom()});
+        for (String id : commit.getBlobs().values()) {
+            if (_trackedBy.putIfAbsent(id, uid) == null
+                && !Utils.join(Main.BLOBS_FOLDER, id).isFile()) {
+                _problems.add("missing blob " + id + " in " + uid);
+            }
+        }
+    }
+
+    /** Check references between objects and from branches. */
+    private void crossCheck() {
+        try (Trace.Phase p = Trace.phase("fsck.connectivity")) {
+            for (Map.Entry<String, String[]> commit : _parents.entrySet()) {
+                for (String parent : commit.getValue()) {
+                    if (parent.equals("")) {
+                        continue;
+                    }
+                    if (!_parents.containsKey(parent)) {
+                        _problems.add("missing commit " + parent
+                                      + " parent of " + commit.getKey());
+                    }
+                }
+            }
+
+            HashSet<String> reachable = new HashSet<>();
+            ArrayDeque<String> work = new ArrayDeque<>();
+            for (Map.Entry<String, String> branch
+                     : Main.REPO.branches().entrySet()) {
+                String head = branch.getValue();
+                if (!_parents.containsKey(head)) {
+                    _problems.add("broken branch " + branch.getKey());
+                }
+                work.push(head);
+            }
+            Reflog.collectIds(work);
+            Stash.collectIds(work);
+            while (!work.isEmpty()) {
+                String uid = work.pop();
+                if (_parents.containsKey(uid) && reachable.add(uid)) {
+                    for (String parent : _parents.get(uid)) {
+                        work.push(parent);
+                    }
+                }
+            }
+            HashSet<String> unreachableParents = new HashSet<>();
+            for (String uid : _parents.keySet()) {
+                if (!reachable.contains(uid)) {
+                    unreachableParents.addAll(
+                        Arrays.asList(_parents.get(uid)));
+                }
+            }
+            for (String uid : _parents.keySet()) {
+                if (!reachable.contains(uid)
+                    && !unreachableParents.contains(uid)) {
+                    _problems.add("dangling commit " + uid);
+                }
+            }
+            for (String id : _blobs) {
+                if (!_trackedBy.containsKey(id)) {
+                    _problems.add("dangling blob " + id);
+                }
+            }
+        }
+    }
+
+    /** Ids of the blobs whose contents match their names. */
+    private final Set<String> _blobs = ConcurrentHashMap.newKeySet();
+    /** Parents of each good commit, by uid. */
+    private final ConcurrentHashMap<String, String[]> _parents =
+        new ConcurrentHashMap<>();
+    /** Some commit tracking each blob id. */
+    private final ConcurrentHashMap<String, String> _trackedBy =
+        new ConcurrentHashMap<>();
+    /** All problems found. */
+    private final Set<String> _problems = ConcurrentHashMap.newKeySet();
+    /** Total size of the object files. */
+    private final AtomicLong _bytes = new AtomicLong();
+}
@@ -0,0 +1,61 @@
+package gitlet;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.HashSet;
+
+/** The gc command, which deletes the commits and blobs that nothing can
+ *  reach any longer.  The roots are the branch heads, the stashes and
+ *  every commit named in a reflog, so a commit left behind by reset stays
+ *  until its reflog entries expire; gc first expires entries older than
+ *  Reflog.DEFAULT_EXPIRY_DAYS.  Commits are read without the commit
+ *  cache, keeping only the ids of what is reachable.  The blame cache,
+ *  which may name deleted commits, is emptied.
+ */
+class Gc {
+
+    /** Expire old reflog entries, then delete unreachable objects. */
+    static void run() {
+        Reflog.expire(Reflog.DEFAULT_EXPIRY_DAYS);
+        HashSet<String> roots = new HashSet<>(Main.REPO.branches().values());
+        Reflog.collectIds(roots);
+        Stash.collectIds(roots);
+
+        HashSet<String> commitFiles = new HashSet<>();
+        HashSet<String> blobs = new HashSet<>();
+        ArrayDeque<String> work = new ArrayDeque<>(roots);
+        while (!work.isEmpty()) {
+            String uid = work.pop();
+            if (uid.equals("")) {
+                continue;
+            }
+            String name = Utils.hash(uid);
+            File file = Utils.join(Main.COMMITS_FOLDER, name);
+            if (!file.isFile() || !commitFiles.add(name)) {
+                continue;
+            }
+            Commit commit = Utils.readObject(file, Commit.class);
+            blobs.addAll(commit.getBlobs().values());
+            work.push(commit.getDad());
+            work.push(commit.getMom());
+        }
+
+        Blame.clearCache();
+        int commits = prune(Main.COMMITS_FOLDER, commitFiles);
+        int removed = prune(Main.BLOBS_FOLDER, blobs);
+        System.out.println("Removed " + commits + " commits and " + removed
+                           + " blobs.");
+    }
+
+    /** Delete the files in DIR whose names are not in KEEP, returning how
+     *  many were deleted. */
+    private static int prune(File dir, HashSet<String> keep) {
+        int count = 0;
+        for (File file : dir.listFiles()) {
+            if (!keep.contains(file.getName()) && file.delete()) {
+                count += 1;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,231 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/** The grep command:
+ *
+ *      grep REGEX [COMMIT... | --all]
+ *
+ *  prints every line matching REGEX in the files of the given commits
+ *  (the head commit by default, or with --all every commit reachable from
+ *  a branch, newest first), as
+ *
+ *      COMMIT:FILE:LINE:TEXT
+ *
+ *  with the first eight digits of the commit's id, commits in the order
+ *  given, files in name order and lines in order.  Blobs are searched
+ *  where they are stored, never checked out.  A blob tracked by many
+ *  commits is searched once: the distinct blobs are searched on the
+ *  Workers pool, largest first, and only their matching lines kept.
+ *  Blobs of LARGE_BLOB bytes or more are memory-mapped, smaller ones are
+ *  read whole.  Lines are found by their bytes and decoded one at a time
+ *  into a reused buffer, so a mapped blob is never held on the heap as a
+ *  whole; only matching lines become Strings.  Blobs with a zero byte
+ *  among their first BINARY_PROBE bytes are taken to be binary and
+ *  skipped.
+ */
+class Grep {
+
+    /** Size from which blobs are memory-mapped. */
+    static final long LARGE_BLOB = 1 << 20;
+    /** Bytes of a blob inspected for a zero byte. */
+    static final int BINARY_PROBE = 8000;
+
+    /** A line that matched. */
+    private static class Match {
+        /** Line NUMBER (from 1), whose text is TEXT. */
+        Match(int number, String text) {
+            this.number = number;
+            this.text = text;
+        }
+
+        /** The line number. */
+        final int number;
+        /** The line. */
+        final String text;
+    }
+
+    /** Run grep with ARGS, which starts with "grep". */
+    static void run(String... args) {
+        if (args.length < 2) {
+            Main.incorrectOperands();
+        }
+        Pattern pattern = null;
+        try {
+            pattern = Pattern.compile(args[1]);
+        } catch (PatternSyntaxException excp) {
+            Main.incorrectOperands();
+        }
+        List<String> commits = commits(args);
+        LinkedHashSet<String> blobs = new LinkedHashSet<>();
+        for (String uid : commits) {
+            blobs.addAll(Main.REPO.readCommit(uid).getBlobs().values());
+        }
+        Map<String, List<Match>> found = search(pattern, blobs);
+
+        StringBuilder out = new StringBuilder();
+        for (String uid : commits) {
+            for (Map.Entry<String, String> file
+                     : Main.REPO.readCommit(uid).getBlobs().entrySet()) {
+                List<Match> matches = found.get(file.getValue());
+                if (matches == null) {
+                    continue;
+                }
+                for (Match match : matches) {
+                    out.append(uid, 0, 8).append(':').append(file.getKey())
+                        .append(':').append(match.number).append(':')
+                        .append(match.text).append('\n');
+                }
+            }
+        }
+        System.out.print(out);
+    }
+
+    /** Return the ids of the commits ARGS asks for. */
+    private static List<String> commits(String[] args) {
+        ArrayList<String> result = new ArrayList<>();
+        if (args.length == 2) {
+            result.add(Main.REPO.getBranchId(Main.REPO.getCurrentBranch()));
+        } else if (args.length == 3 && args[2].equals("--all")) {
+            result.addAll(reachable());
+        } else {
+            for (int i = 2; i < args.length; i += 1) {
+                String uid = Main.abbreviated(args[i]);
+                Main.commitExists(uid);
+                if (!result.contains(uid)) {
+                    result.add(uid);
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Return the ids of the commits reachable from any branch, newest
+     *  first. */
+    private static List<String> reachable() {
+        CommitGraph graph = Main.REPO.commitGraph();
+        HashSet<String> seen = new HashSet<>();
+        ArrayDeque<String> work =
+            new ArrayDeque<>(Main.REPO.branches().values());
+        ArrayList<String> result = new ArrayList<>();
+        while (!work.isEmpty()) {
+            String uid = work.pop();
+            if (uid.equals("") || !seen.add(uid)) {
+                continue;
+            }
+            result.add(uid);
+            CommitGraph.Entry entry = graph.lookup(uid);
+            work.push(entry.dad);
+            work.push(entry.mom);
+        }
+        result.sort(Comparator.comparingLong(
+                        (String uid) -> -graph.lookup(uid).epoch)
+                    .thenComparing(Comparator.naturalOrder()));
+        return result;
+    }
+
+    /** Search each of BLOBS for PATTERN, returning the matching lines of
+     *  each blob that has any. */
+    private static Map<String, List<Match>> search(Pattern pattern,
+                                                   Iterable<String> blobs) {
+        try (Trace.Phase p = Trace.phase("grep.search")) {
+            ArrayList<File> files = new ArrayList<>();
+            for (String id : blobs) {
+                files.add(Utils.join(Main.BLOBS_FOLDER, id));
+            }
+            long[] lengths = new long[files.size()];
+            ArrayList<Integer> order = new ArrayList<>();
+            for (int i = 0; i < lengths.length; i += 1) {
+                lengths[i] = files.get(i).length();
+                order.add(i);
+            }
+            order.sort(Comparator.comparingLong((Integer i) -> -lengths[i]));
+            Map<String, List<Match>> result = new ConcurrentHashMap<>();
+            Workers.forEach(order, i -> {
+                File file = files.get(i);
+                ByteBuffer bytes = contents(file, lengths[i]);
+                if (bytes == null) {
+                    return;
+                }
+                List<Match> matches = matches(pattern.matcher(""), bytes);
+                if (!matches.isEmpty()) {
+                    result.put(file.getName(), matches);
+                }
+            });
+            return result;
+        }
+    }
+
+    /** Return the lines of BYTES, which are UTF-8, that MATCHER, which is
+     *  reset to each in turn, finds its pattern in. */
+    private static List<Match> matches(Matcher matcher, ByteBuffer bytes) {
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        ByteBuffer in = bytes.duplicate();
+        CharBuffer line = CharBuffer.allocate(256);
+        ArrayList<Match> result = new ArrayList<>();
+        int number = 1;
+        for (int start = 0; start < bytes.limit(); number += 1) {
+            int end = start;
+            while (end < bytes.limit() && bytes.get(end) != '\n') {
+                end += 1;
+            }
+            in.limit(end).position(start);
+            if (line.capacity() < end - start) {
+                line = CharBuffer.allocate(end - start);
+            }
+            line.clear();
+            decoder.reset();
+            decoder.decode(in, line, true);
+            decoder.flush(line);
+            line.flip();
+            if (matcher.reset(line).find()) {
+                result.add(new Match(number, line.toString()));
+            }
+            start = end + 1;
+        }
+        return result;
+    }
+
+    /** Return the contents of blob FILE, which is LENGTH bytes long, or
+     *  null if it is binary. */
+    private static ByteBuffer contents(File file, long length) {
+        ByteBuffer bytes;
+        if (length >= LARGE_BLOB) {
+            try (FileChannel channel = FileChannel.open(
+                     file.toPath(), StandardOpenOption.READ)) {
+                bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+        } else {
+            bytes = ByteBuffer.wrap(Utils.readContents(file));
+        }
+        for (int i = 0; i < Math.min(BINARY_PROBE, bytes.limit()); i += 1) {
+            if (bytes.get(i) == 0) {
+                return null;
+            }
+        }
+        return bytes;
+    }
+}
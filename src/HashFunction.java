@@ -0,0 +1,155 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/** A hash function for object ids.  Each repository chooses one when it is
+ *  initialized and records it in its config as core.objectformat; every
+ *  blob id, commit uid and commit file name in the repository comes from
+ *  it.  Repositories without the setting predate it and use SHA-1.
+ */
+final class HashFunction {
+
+    /** SHA-1, with 40-digit ids. */
+    static final HashFunction SHA1 = new HashFunction("sha1", "SHA-1", 20);
+    /** SHA-256, with 64-digit ids. */
+    static final HashFunction SHA256 =
+        new HashFunction("sha256", "SHA-256", 32);
+
+    /** Config key recording a repository's hash function. */
+    static final String CONFIG_KEY = "core.objectformat";
+
+    /** The hash function called NAME in configs, whose JCA algorithm is
+     *  ALGORITHM and whose digests are BYTES long. */
+    private HashFunction(String name, String algorithm, int bytes) {
+        _name = name;
+        _bytes = bytes;
+        _phase = "hash." + name;
+        _digests = ThreadLocal.withInitial(() -> {
+            try {
+                return MessageDigest.getInstance(algorithm);
+            } catch (NoSuchAlgorithmException excp) {
+                throw new IllegalArgumentException("System does not support "
+                                                   + algorithm);
+            }
+        });
+    }
+
+    /** Return the hash function called NAME, or null if there is none. */
+    static HashFunction named(String name) {
+        if (SHA1._name.equals(name)) {
+            return SHA1;
+        } else if (SHA256._name.equals(name)) {
+            return SHA256;
+        }
+        return null;
+    }
+
+    /** Return the hash function of the repository in the current
+     *  directory, reading its config the first time. */
+    static HashFunction current() {
+        if (_current == null) {
+            _current = of(Main.COMMON_FOLDER);
+        }
+        return _current;
+    }
+
+    /** Make FUNCTION the hash function of the current repository for the
+     *  rest of this process, as when it is initialized. */
+    static void use(HashFunction function) {
+        _current = function;
+    }
+
+    /** Return the hash function of the repository whose .gitlet directory
+     *  is DIR. */
+    static HashFunction of(File dir) {
+        String name = Config.read(dir).getProperty(CONFIG_KEY, SHA1._name);
+        HashFunction result = named(name);
+        if (result == null) {
+            throw Utils.error("Unknown object format %s.", name);
+        }
+        return result;
+    }
+
+    /** Return my name, as written in configs. */
+    String name() {
+        return _name;
+    }
+
+    /** Return the length of my ids as hexadecimal numerals. */
+    int idLength() {
+        return 2 * _bytes;
+    }
+
+    /** Return the raw digest of the concatenation of VALS, which may be
+     *  any mixture of byte arrays and Strings. */
+    byte[] digest(Object... vals) {
+        try (Trace.Phase p = Trace.phase(_phase)) {
+            MessageDigest md = _digests.get();
+            for (Object val : vals) {
+                if (val instanceof byte[]) {
+                    md.update((byte[]) val);
+                    Trace.hashed(((byte[]) val).length);
+                } else if (val instanceof String) {
+                    byte[] bytes =
+                        ((String) val).getBytes(StandardCharsets.UTF_8);
+                    md.update(bytes);
+                    Trace.hashed(bytes.length);
+                } else {
+                    md.reset();
+                    throw new IllegalArgumentException("improper type to "
+                                                       + _name);
+                }
+            }
+            return md.digest();
+        }
+    }
+
+    /** Return the raw digest of everything remaining in IN, read a buffer
+     *  at a time so that large files need not be held in memory. */
+    byte[] digest(InputStream in) throws IOException {
+        try (Trace.Phase p = Trace.phase(_phase)) {
+            MessageDigest md = _digests.get();
+            byte[] buffer = new byte[1 << 16];
+            long total = 0;
+            try {
+                for (int n; (n = in.read(buffer)) != -1; total += n) {
+                    md.update(buffer, 0, n);
+                }
+            } catch (IOException excp) {
+                md.reset();
+                throw excp;
+            }
+            Trace.hashed(total);
+            return md.digest();
+        }
+    }
+
+    /** Return the id, as a hexadecimal numeral, of the concatenation of
+     *  VALS. */
+    String hex(Object... vals) {
+        return Utils.toHex(digest(vals));
+    }
+
+    @Override
+    public String toString() {
+        return _name;
+    }
+
+    /** Name in configs. */
+    private final String _name;
+    /** Digest length in bytes. */
+    private final int _bytes;
+    /** Name of the Trace phase timing digests. */
+    private final String _phase;
+    /** One digest per thread.  digest() resets a digest, so each can be
+     *  reused by the next call on its thread. */
+    private final ThreadLocal<MessageDigest> _digests;
+
+    /** Hash function of the current repository, once known. */
+    private static HashFunction _current;
+}
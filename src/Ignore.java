@@ -0,0 +1,246 @@
+package gitlet;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.regex.Pattern;
+
+/** Ignore rules: glob patterns, one per line in .gitletignore at the top
+ *  of the working directory, naming untracked files that status should
+ *  not report and that the untracked-file checks should not trip on.
+ *  The working-tree scanner leaves out what they match, and does not
+ *  descend into a matching directory at all.  Rules follow .gitignore:
+ *
+ *      build/          a directory named build, anywhere
+ *      *.class         a file whose name ends in .class, anywhere
+ *      /notes.txt      notes.txt at the top only (so for any rule with a
+ *                      '/' other than at its end)
+ *      docs/**\/*.tmp   any .tmp file under the top-level docs
+ *      !keep.class     not ignored after all
+ *
+ *  '*' and '?' match within one name, "**" across names, and [...] a set
+ *  of characters.  The last rule matching a path decides.  Files already
+ *  tracked are unaffected.
+ *
+ *  The rules are compiled once per command.  A rule without wildcards is
+ *  filed in a hash table under the name or path it matches, and a rule
+ *  "*.EXT" (with no other wildcards) under ".EXT", so that matching a
+ *  path costs a few table lookups, one per '.' in its name, and a regular
+ *  expression match only for the remaining rules, newest first, until one
+ *  decides.
+ */
+class Ignore {
+
+    /** Name of the rules file, in the working directory. */
+    static final String FILE_NAME = ".gitletignore";
+
+    /** One rule. */
+    private static class Rule {
+        /** The INDEXth rule, which un-ignores iff NEGATE, applies only to
+         *  directories iff DIRONLY, and matches names or paths with
+         *  REGEX. */
+        Rule(int index, boolean negate, boolean dirOnly, Pattern regex) {
+            this.index = index;
+            this.negate = negate;
+            this.dirOnly = dirOnly;
+            this.regex = regex;
+        }
+
+        /** Position in the file; later rules win. */
+        final int index;
+        /** True iff the rule un-ignores. */
+        final boolean negate;
+        /** True iff the rule matches only directories. */
+        final boolean dirOnly;
+        /** What the rule matches, or null if it is filed by literal. */
+        final Pattern regex;
+    }
+
+    /** Return true iff PATH (relative to the working directory, with '/'
+     *  separators), which is a directory iff DIR, is ignored by a rule of
+     *  its own.  Callers walking the tree need not check its parents,
+     *  having pruned ignored directories already. */
+    static boolean ignored(String path, boolean dir) {
+        if (!load()) {
+            return false;
+        }
+        String name = path.substring(path.lastIndexOf('/') + 1);
+        Rule best = null;
+        best = later(best, _names.get(name), dir);
+        best = later(best, _paths.get(path), dir);
+        for (int k = name.indexOf('.'); k >= 0;
+             k = name.indexOf('.', k + 1)) {
+            best = later(best, _extensions.get(name.substring(k)), dir);
+        }
+        for (int i = _patterns.size() - 1; i >= 0; i -= 1) {
+            Rule rule = _patterns.get(i);
+            if (best != null && rule.index < best.index) {
+                break;
+            }
+            if (rule.dirOnly && !dir) {
+                continue;
+            }
+            String subject = _anchored.get(i) ? path : name;
+            if (rule.regex.matcher(subject).matches()) {
+                best = rule;
+                break;
+            }
+        }
+        return best != null && !best.negate;
+    }
+
+    /** Return true iff PATH, which is a directory iff DIR, or a directory
+     *  leading to it is ignored. */
+    static boolean excludes(String path, boolean dir) {
+        if (!load()) {
+            return false;
+        }
+        for (int k = path.indexOf('/'); k > 0; k = path.indexOf('/', k + 1)) {
+            if (ignored(path.substring(0, k), true)) {
+                return true;
+            }
+        }
+        return ignored(path, dir);
+    }
+
+    /** Return whichever of BEST and the rules in CANDIDATES that apply to
+     *  a directory iff DIR comes last. */
+    private static Rule later(Rule best, ArrayList<Rule> candidates,
+                              boolean dir) {
+        if (candidates != null) {
+            for (Rule rule : candidates) {
+                if ((dir || !rule.dirOnly)
+                    && (best == null || rule.index > best.index)) {
+                    best = rule;
+                }
+            }
+        }
+        return best;
+    }
+
+    /** Read and compile the rules if need be, returning true iff there
+     *  are any. */
+    private static synchronized boolean load() {
+        if (!_loaded) {
+            _loaded = true;
+            File file = Utils.join(Main.CWD, FILE_NAME);
+            if (file.isFile()) {
+                String[] lines =
+                    Utils.readContentsAsString(file).split("\n");
+                for (int i = 0; i < lines.length; i += 1) {
+                    compile(i, lines[i]);
+                }
+            }
+        }
+        return _count > 0;
+    }
+
+    /** Compile LINE, the INDEXth line of the rules file. */
+    private static void compile(int index, String line) {
+        String pattern = line.stripTrailing();
+        if (pattern.isEmpty() || pattern.startsWith("#")) {
+            return;
+        }
+        boolean negate = pattern.startsWith("!");
+        if (negate) {
+            pattern = pattern.substring(1);
+        }
+        boolean dirOnly = pattern.endsWith("/");
+        while (pattern.endsWith("/")) {
+            pattern = pattern.substring(0, pattern.length() - 1);
+        }
+        while (pattern.startsWith("**/") && pattern.indexOf('/', 3) < 0) {
+            pattern = pattern.substring(3);
+        }
+        boolean anchored = pattern.contains("/");
+        if (pattern.startsWith("/")) {
+            pattern = pattern.substring(1);
+        }
+        if (pattern.isEmpty()) {
+            return;
+        }
+        _count += 1;
+        if (!hasWildcards(pattern)) {
+            file(anchored ? _paths : _names, pattern,
+                 new Rule(index, negate, dirOnly, null));
+        } else if (!anchored && pattern.startsWith("*.")
+                   && !hasWildcards(pattern.substring(1))) {
+            file(_extensions, pattern.substring(1),
+                 new Rule(index, negate, dirOnly, null));
+        } else {
+            _patterns.add(new Rule(index, negate, dirOnly,
+                                   Pattern.compile(regex(pattern))));
+            _anchored.add(anchored);
+        }
+    }
+
+    /** Add RULE to TABLE under KEY. */
+    private static void file(HashMap<String, ArrayList<Rule>> table,
+                             String key, Rule rule) {
+        table.computeIfAbsent(key, k -> new ArrayList<>()).add(rule);
+    }
+
+    /** Return true iff GLOB has wildcard characters. */
+    private static boolean hasWildcards(String glob) {
+        for (int i = 0; i < glob.length(); i += 1) {
+            char c = glob.charAt(i);
+            if (c == '*' || c == '?' || c == '[' || c == '\\') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Return a regular expression matching what GLOB does. */
+    private static String regex(String glob) {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < glob.length(); i += 1) {
+            char c = glob.charAt(i);
+            if (glob.startsWith("**/", i)) {
+                result.append("(?:.*/)?");
+                i += 2;
+            } else if (glob.startsWith("**", i)) {
+                result.append(".*");
+                i += 1;
+            } else if (c == '*') {
+                result.append("[^/]*");
+            } else if (c == '?') {
+                result.append("[^/]");
+            } else if (c == '[' && glob.indexOf(']', i + 2) > 0) {
+                int end = glob.indexOf(']', i + 2);
+                String set = glob.substring(i + 1, end);
+                if (set.startsWith("!")) {
+                    set = "^" + set.substring(1);
+                }
+                result.append('[').append(set.replace("\\", "\\\\"))
+                    .append(']');
+                i = end;
+            } else if (c == '\\' && i + 1 < glob.length()) {
+                i += 1;
+                result.append(Pattern.quote(String.valueOf(glob.charAt(i))));
+            } else {
+                result.append(Pattern.quote(String.valueOf(c)));
+            }
+        }
+        return result.toString();
+    }
+
+    /** True once the rules have been read. */
+    private static boolean _loaded;
+    /** Number of rules. */
+    private static int _count;
+    /** Literal rules matching a name anywhere, by name. */
+    private static final HashMap<String, ArrayList<Rule>> _names =
+        new HashMap<>();
+    /** Literal rules matching one path, by path. */
+    private static final HashMap<String, ArrayList<Rule>> _paths =
+        new HashMap<>();
+    /** Rules "*.EXT", by ".EXT". */
+    private static final HashMap<String, ArrayList<Rule>> _extensions =
+        new HashMap<>();
+    /** Other rules, in order. */
+    private static final ArrayList<Rule> _patterns = new ArrayList<>();
+    /** Whether each of _patterns matches whole paths, rather than
+     *  names. */
+    private static final ArrayList<Boolean> _anchored = new ArrayList<>();
+}
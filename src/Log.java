@@ -0,0 +1,368 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.PriorityQueue;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/** The log command:
+ *
+ *      log [-n N | --max-count=N] [--since=DATE] [--until=DATE]
+ *          [--grep=REGEX] [--first-parent | --all-parents | --graph]
+ *          [--oneline] [-- PATH...]
+ *
+ *  By default log follows first parents from the head of the current
+ *  branch.  With --all-parents it follows second parents as well, so
+ *  commits brought in by merges appear, newest first: commits wait in a
+ *  priority queue on their creation times (kept in each commit as a
+ *  number, so no timestamp is parsed), and each commit gets a position
+ *  when it is first found and is queued then, so that a commit reached
+ *  along many paths is read and queued once.  --graph
+ *  does the same and draws the lanes of the history to the left.
+ *
+ *  Parents and times come from the commit graph where it has them.  With
+ *  PATHs, only commits that changed one of them (or a file under one)
+ *  from their first parents are shown; a commit whose changed-path filter
+ *  rules out every PATH is passed over without reading it.
+ *
+ *  Commits are read only when they are about to be shown.  Log stops as
+ *  soon as N commits have been shown, at the first commit older than
+ *  --since (every commit still queued is older yet), or when its output
+ *  is closed, as when piped into head.  A DATE is yyyy-MM-dd, optionally
+ *  followed by HH:mm or HH:mm:ss, in local time, or @SECONDS since the
+ *  epoch.  All output goes through one buffered stream.
+ */
+class Log {
+
+    /** Run log with ARGS, which starts with "log". */
+    static void run(String... args) {
+        Log log = new Log();
+        log.parse(args);
+        log.print(Main.REPO.getBranchId(Main.REPO.getCurrentBranch()));
+    }
+
+    /** Set my options from ARGS. */
+    private void parse(String[] args) {
+        for (int i = 1; i < args.length; i += 1) {
+            String arg = args[i];
+            if (arg.equals("--")) {
+                for (i += 1; i < args.length; i += 1) {
+                    _paths.add(path(args[i]));
+                }
+            } else if (arg.equals("-n") && i + 1 < args.length) {
+                i += 1;
+                _limit = count(args[i]);
+            } else if (arg.startsWith("--max-count=")) {
+                _limit = count(value(arg));
+            } else if (arg.startsWith("--since=")) {
+                _since = date(value(arg));
+            } else if (arg.startsWith("--until=")) {
+                _until = date(value(arg));
+            } else if (arg.startsWith("--grep=")) {
+                try {
+                    _grep = Pattern.compile(value(arg));
+                } catch (PatternSyntaxException excp) {
+                    Main.incorrectOperands();
+                }
+            } else if (arg.equals("--first-parent")) {
+                _firstParent = true;
+            } else if (arg.equals("--all-parents")) {
+                _allParents = true;
+            } else if (arg.equals("--graph")) {
+                _graph = _allParents = true;
+            } else if (arg.equals("--oneline")) {
+                _oneline = true;
+            } else {
+                Main.incorrectOperands();
+            }
+        }
+        _allParents &= !_firstParent;
+    }
+
+    /** Print the history from the commit whose id is HEAD, as my options
+     *  select. */
+    private void print(String head) {
+        PrintStream out = new PrintStream(
+            new BufferedOutputStream(new FileOutputStream(FileDescriptor.out),
+                                     1 << 16), false);
+        PriorityQueue<Queued> queue = new PriorityQueue<>();
+        enqueue(queue, head);
+        int shown = 0;
+        while (!queue.isEmpty() && shown < _limit && !out.checkError()) {
+            Queued next = queue.poll();
+            CommitGraph.Entry entry = next.entry;
+            if (entry.epoch < _since) {
+                break;
+            }
+            boolean selected = entry.epoch <= _until
+                && changesPaths(next.uid, entry)
+                && (_grep == null || _grep.matcher(
+                        Main.REPO.readCommit(next.uid).getMsg()).find());
+            if (selected) {
+                show(out, Main.REPO.readCommit(next.uid));
+                shown += 1;
+            }
+            if (_graph) {
+                advanceLanes(out, next.uid, entry, selected);
+            }
+            if (!entry.dad.equals("")) {
+                enqueue(queue, entry.dad);
+            }
+            if (_allParents && !entry.mom.equals("")) {
+                enqueue(queue, entry.mom);
+            }
+        }
+        out.flush();
+    }
+
+    /** Add the commit whose id is UID to QUEUE unless it has been queued
+     *  before. */
+    private void enqueue(PriorityQueue<Queued> queue, String uid) {
+        int position = _positions.size();
+        if (_positions.putIfAbsent(uid, position) == null) {
+            queue.add(new Queued(uid, Main.REPO.commitGraph().lookup(uid),
+                                 position));
+        }
+    }
+
+    /** Return true iff commit UID, whose graph entry is ENTRY, changed one
+     *  of my paths from its first parent, or I have none.  The commit and
+     *  its parent are read only if ENTRY's filter admits a path. */
+    private boolean changesPaths(String uid, CommitGraph.Entry entry) {
+        if (_paths.isEmpty()) {
+            return true;
+        }
+        TreeSet<String> changed = null;
+        for (String path : _paths) {
+            if (!entry.mayHaveChanged(path)) {
+                continue;
+            }
+            if (changed == null) {
+                changed = CommitGraph.changedPaths(
+                    Main.REPO.readCommit(uid), entry.dad.equals("") ? null
+                    : Main.REPO.readCommit(entry.dad));
+            }
+            if (changed.contains(path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Print COMMIT on OUT. */
+    private void show(PrintStream out, Commit commit) {
+        String text;
+        if (_oneline) {
+            String msg = commit.getMsg();
+            int end = msg.indexOf('\n');
+            text = commit.getUid() + " "
+                + (end < 0 ? msg : msg.substring(0, end)) + "\n";
+        } else {
+            text = "===\ncommit " + commit.getUid() + "\nDate: "
+                + commit.getTime() + "\n" + commit.getMsg() + "\n\n";
+        }
+        if (!_graph) {
+            out.append(text);
+            return;
+        }
+        int column = laneOf(commit.getUid());
+        String prefix = lanes(column, '*');
+        String rest = lanes(column, commit.getDad().equals("") ? ' ' : '|');
+        for (String line : text.substring(0, text.length() - 1)
+                 .split("\n", -1)) {
+            out.append(prefix);
+            if (!line.isEmpty()) {
+                out.append(' ').append(line);
+            }
+            out.append('\n');
+            prefix = rest;
+        }
+    }
+
+    /** Replace the lane of commit UID, whose graph entry is ENTRY, by
+     *  lanes for its parents, printing on OUT how the lanes branch and
+     *  join iff SHOWN. */
+    private void advanceLanes(PrintStream out, String uid,
+                              CommitGraph.Entry entry, boolean shown) {
+        int column = laneOf(uid);
+        if (entry.dad.equals("")) {
+            _lanes.remove(column);
+        } else {
+            _lanes.set(column, entry.dad);
+        }
+        if (_allParents && !entry.mom.equals("")
+            && !_lanes.contains(entry.mom)) {
+            _lanes.add(column + 1, entry.mom);
+            if (shown) {
+                out.append(edges(column + 1, '\\')).append('\n');
+            }
+        }
+        for (int j = 1; j < _lanes.size(); j += 1) {
+            if (_lanes.indexOf(_lanes.get(j)) < j) {
+                _lanes.remove(j);
+                if (shown) {
+                    out.append(edges(j, '/')).append('\n');
+                }
+                j -= 1;
+            }
+        }
+    }
+
+    /** Return the lane holding UID, adding one at the right if none
+     *  does. */
+    private int laneOf(String uid) {
+        int column = _lanes.indexOf(uid);
+        if (column < 0) {
+            _lanes.add(uid);
+            column = _lanes.size() - 1;
+        }
+        return column;
+    }
+
+    /** Return a row of the graph with MARK in lane COLUMN and "|" in the
+     *  others. */
+    private String lanes(int column, char mark) {
+        StringBuilder row = new StringBuilder();
+        for (int i = 0; i < _lanes.size(); i += 1) {
+            row.append(i == column ? mark : '|').append(' ');
+        }
+        return row.toString().stripTrailing();
+    }
+
+    /** Return a row of the graph in which the lanes from COLUMN on each
+     *  move one place as EDGE shows ('\\' right, '/' left), with "|" in
+     *  the lanes before it. */
+    private String edges(int column, char edge) {
+        int width = edge == '/' ? _lanes.size() + 1 : _lanes.size();
+        char[] row = new char[2 * width - 1];
+        Arrays.fill(row, ' ');
+        for (int i = 0; i < width; i += 1) {
+            if (i < column) {
+                row[2 * i] = '|';
+            } else {
+                row[2 * i - 1] = edge;
+            }
+        }
+        return new String(row).stripTrailing();
+    }
+
+    /** Return the part of the option ARG after its '='. */
+    private static String value(String arg) {
+        return arg.substring(arg.indexOf('=') + 1);
+    }
+
+    /** Return PATH as commits name it, without a leading "./" or a
+     *  trailing "/". */
+    private static String path(String path) {
+        while (path.startsWith("./")) {
+            path = path.substring(2);
+        }
+        while (path.endsWith("/") && path.length() > 1) {
+            path = path.substring(0, path.length() - 1);
+        }
+        return path;
+    }
+
+    /** Return the count TEXT, exiting if it is not a non-negative
+     *  integer. */
+    private static int count(String text) {
+        try {
+            int result = Integer.parseInt(text);
+            if (result >= 0) {
+                return result;
+            }
+        } catch (NumberFormatException excp) {
+            /* Reported below. */
+        }
+        Main.incorrectOperands();
+        return 0;
+    }
+
+    /** Return the time denoted by TEXT in milliseconds since the epoch,
+     *  exiting if TEXT is not a date. */
+    private static long date(String text) {
+        if (text.startsWith("@")) {
+            try {
+                return Long.parseLong(text.substring(1)) * 1000;
+            } catch (NumberFormatException excp) {
+                Main.incorrectOperands();
+            }
+        }
+        for (String pattern : DATE_FORMATS) {
+            SimpleDateFormat format = new SimpleDateFormat(pattern);
+            format.setLenient(false);
+            try {
+                Date date = format.parse(text);
+                if (format.format(date).equals(text)) {
+                    return date.getTime();
+                }
+            } catch (ParseException excp) {
+                continue;
+            }
+        }
+        Main.incorrectOperands();
+        return 0;
+    }
+
+    /** Formats accepted for --since and --until. */
+    private static final String[] DATE_FORMATS = {
+        "yyyy-MM-dd HH:mm:ss", "yyyy-MM-dd HH:mm", "yyyy-MM-dd"
+    };
+
+    /** A commit waiting to be shown, newest first. */
+    private static class Queued implements Comparable<Queued> {
+        /** Commit UID, whose graph entry is ENTRY, the POSITIONth commit
+         *  log has come across. */
+        Queued(String uid, CommitGraph.Entry entry, int position) {
+            this.uid = uid;
+            this.entry = entry;
+            this.position = position;
+        }
+
+        @Override
+        public int compareTo(Queued other) {
+            int c = Long.compare(other.entry.epoch, entry.epoch);
+            return c != 0 ? c : Integer.compare(position, other.position);
+        }
+
+        /** The commit's uid. */
+        final String uid;
+        /** What the commit graph knows of it. */
+        final CommitGraph.Entry entry;
+        /** Order in which it was found, breaking ties in time. */
+        final int position;
+    }
+
+    /** Most commits to show. */
+    private int _limit = Integer.MAX_VALUE;
+    /** Earliest commit time shown, in milliseconds since the epoch. */
+    private long _since = Long.MIN_VALUE;
+    /** Latest commit time shown, in milliseconds since the epoch. */
+    private long _until = Long.MAX_VALUE;
+    /** Pattern a message must contain, or null. */
+    private Pattern _grep;
+    /** True iff each commit is shown on one line. */
+    private boolean _oneline;
+    /** True iff only first parents are followed. */
+    private boolean _firstParent;
+    /** True iff second parents are followed too. */
+    private boolean _allParents;
+    /** True iff the commit graph is drawn beside the commits. */
+    private boolean _graph;
+    /** Position of each commit found so far, in order of finding. */
+    private final HashMap<String, Integer> _positions = new HashMap<>();
+    /** Paths one of which a commit must change to be shown, if any. */
+    private final ArrayList<String> _paths = new ArrayList<>();
+    /** Commits expected next in each lane of the graph, left to right. */
+    private final ArrayList<String> _lanes = new ArrayList<>();
+}
@@ -8,8 +8,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
 
-import static gitlet.Utils.UID_LENGTH;
-import static gitlet.Utils.sha1;
+import static gitlet.Utils.hash;
 
 /** Driver class for Gitlet, the tiny stupid version-control system.
  *  @author Kyung-Wan Woo
@@ -18,12 +17,16 @@ public class Main {
 
     /** Current Working Directory. */
     static final File CWD = new File(".");
-    /** Gitlet folder. */
-    static final File GITLET_FOLDER = Utils.join(CWD, ".gitlet");
+    /** Gitlet folder, holding the state of this working directory alone:
+     *  .gitlet, or for a linked worktree the folder it names. */
+    static final File GITLET_FOLDER = Worktree.gitletFolder(CWD);
+    /** Folder holding what all worktrees share: GITLET_FOLDER, unless
+     *  this is a linked worktree. */
+    static final File COMMON_FOLDER = Worktree.commonFolder(GITLET_FOLDER);
     /** Blobs folder. */
-    static final File BLOBS_FOLDER = Utils.join(GITLET_FOLDER, "blobs");
+    static final File BLOBS_FOLDER = Utils.join(COMMON_FOLDER, "blobs");
     /** Branches folder. */
-    static final File BRANCHES_FOLDER = Utils.join(GITLET_FOLDER, "branches");
+    static final File BRANCHES_FOLDER = Utils.join(COMMON_FOLDER, "branches");
     /** Staging area folder. */
     static final File STAGING_AREA = Utils.join(GITLET_FOLDER, "staging_area");
     /** Staged for addition folder. */
@@ -31,30 +34,35 @@ public class Main {
     /** Staged for removal folder. */
     static final File REMOVAL = Utils.join(STAGING_AREA, "removal");
     /** Commits folder. */
-    static final File COMMITS_FOLDER = Utils.join(GITLET_FOLDER, "commits");
+    static final File COMMITS_FOLDER = Utils.join(COMMON_FOLDER, "commits");
     /** Repo class's instance to keep track of this .gitlet directory. */
     static final Repo REPO = new Repo();
 
     /** Usage: java gitlet.Main ARGS, where ARGS contains
      *  <COMMAND> <OPERAND> .... */
     public static void main(String... args) throws IOException {
+        Trace.command(String.join(" ", args));
         if (args.length == 0) {
             System.out.println("Please enter a command.");
             System.exit(0);
         } else if (args[0].equals("init")) {
-            init();
+            init(args);
             System.exit(0);
         } else {
             noGitletCheck();
         }
-        if (args[0].equals("add")) {
+        if (args[0].equals("add") && Stage.recursive(args)) {
+            Stage.add(args);
+        } else if (args[0].equals("add")) {
             add(args[1]);
         } else if (args[0].equals("commit")) {
             commit(args[1]);
+        } else if (args[0].equals("rm") && Stage.recursive(args)) {
+            Stage.rm(args[2]);
         } else if (args[0].equals("rm")) {
             rm(args[1]);
         } else if (args[0].equals("log")) {
-            log();
+            Log.run(args);
         } else if (args[0].equals("global-log")) {
             global();
         } else if (args[0].equals("find")) {
@@ -71,12 +79,65 @@ public class Main {
             reset(args[1]);
         } else if (args[0].equals("merge")) {
             merge(args[1]);
+        } else if (args[0].equals("fast-import")) {
+            FastImport.run(args.length > 1 ? args[1] : null);
+        } else if (args[0].equals("bundle")) {
+            Bundle.run(args);
+        } else if (args[0].equals("add-remote")) {
+            Remote.addRemote(args[1], args[2]);
+        } else if (args[0].equals("rm-remote")) {
+            Remote.removeRemote(args[1]);
+        } else if (args[0].equals("fetch")) {
+            Remote.fetch(args[1], args[2]);
+        } else if (args[0].equals("push")) {
+            Remote.push(args[1], args[2]);
+        } else if (args[0].equals("pull")) {
+            Remote.pull(args[1], args[2]);
+        } else if (args[0].equals("sparse-checkout")) {
+            Sparse.run(args);
+        } else if (args[0].equals("fsck")) {
+            Fsck.run();
+        } else if (args[0].equals("pack-refs")) {
+            REPO.packBranches();
+        } else if (args[0].equals("reflog")) {
+            Reflog.run(args);
+        } else if (args[0].equals("gc")) {
+            Gc.run();
+        } else if (args[0].equals("fsmonitor")) {
+            FsMonitor.run(args);
+        } else if (args[0].equals("grep")) {
+            Grep.run(args);
+        } else if (args[0].equals("cherry-pick")) {
+            Replay.cherryPick(args);
+        } else if (args[0].equals("rebase")) {
+            Replay.rebase(args);
+        } else if (args[0].equals("stash")) {
+            Stash.run(args);
+        } else if (args[0].equals("worktree")) {
+            Worktree.run(args);
+        } else if (args[0].equals("diff")) {
+            TreeDiff.run(args);
+        } else if (args[0].equals("blame")) {
+            Blame.run(args);
+        } else if (args[0].equals("commit-graph")) {
+            commitGraph(args);
         } else {
             System.out.println("No command with that name exists.");
             System.exit(0);
         }
     }
 
+    /** Run commit-graph with ARGS, whose only form is "commit-graph
+     *  write". */
+    private static void commitGraph(String[] args) {
+        if (args.length != 2 || !args[1].equals("write")) {
+            System.out.println("Incorrect operands.");
+            System.exit(0);
+        }
+        int added = REPO.commitGraph().write();
+        System.out.println("Added " + added + " commits to the commit graph.");
+    }
+
     private static void filterCheckout(String[] args) throws IOException {
         if (args[1].equals("--")) {
             checkoutFile(args[2]);
@@ -105,22 +166,34 @@ public class Main {
         REMOVAL.mkdir();
     }
 
-    private static Commit getCurrent() {
-        File branch = Utils.join(BRANCHES_FOLDER, REPO.getCurrentBranch());
-        String uid = Utils.readContentsAsString(branch);
-        File commit = Utils.join(COMMITS_FOLDER, sha1(uid));
-        Commit current = Utils.readObject(commit, Commit.class);
-        return current;
+    static Commit getCurrent() {
+        return REPO.getHeadOfBranch(REPO.getCurrentBranch());
     }
 
-    private static void init() throws IOException {
+    /** Create a repository, whose object ids use the hash function named
+     *  by an optional --object-format=NAME in ARGS (SHA-1 by default). */
+    private static void init(String[] args) throws IOException {
         if (GITLET_FOLDER.exists()) {
             String m1 = "A Gitlet version-control system";
             String m2 = " already exists in the current directory.";
             System.out.println(m1 + m2);
             System.exit(0);
         }
+        HashFunction function = HashFunction.SHA1;
+        String option = "--object-format=";
+        if (args.length == 2 && args[1].startsWith(option)) {
+            function = HashFunction.named(args[1].substring(option.length()));
+            if (function == null) {
+                System.out.println("Unknown object format.");
+                System.exit(0);
+            }
+        } else if (args.length != 1) {
+            System.out.println("Incorrect operands.");
+            System.exit(0);
+        }
         setupPersistence();
+        HashFunction.use(function);
+        Config.set(HashFunction.CONFIG_KEY, function.name());
         Commit initial = new Commit("initial commit", "", "");
         REPO.updateCommit(initial);
         REPO.makeNewBranch("master", initial);
@@ -146,21 +219,17 @@ public class Main {
             File tracked = Utils.join(BLOBS_FOLDER, current.getBlobs().get(fileName));
             String trackedContent = Utils.readContentsAsString(tracked);
             if (Utils.readContentsAsString(target).equals(trackedContent)) {
-                Utils.join(REMOVAL, fileName).delete();
+                REPO.unstage(REMOVAL, fileName);
             } else {
-                String fileContents = Utils.readContentsAsString(target);
-                File toAdd = Utils.join(ADDITION, fileName);
-                Utils.writeContents(toAdd, fileContents);
+                REPO.stageAddition(fileName, Utils.readContents(target));
             }
         } else {
-            String fileContents = Utils.readContentsAsString(target);
-            File toAdd = Utils.join(ADDITION, fileName);
-            Utils.writeContents(toAdd, fileContents);
+            REPO.stageAddition(fileName, Utils.readContents(target));
         }
     }
 
     private static void commit(String message) throws IOException {
-        if (ADDITION.listFiles().length == 0 && REMOVAL.listFiles().length == 0) {
+        if (REPO.stagingAreaEmpty()) {
             System.out.println("No changes added to the commit.");
             System.exit(0);
         }
@@ -168,11 +237,11 @@ public class Main {
             System.out.println("Please enter a commit message.");
             System.exit(0);
         }
-        File branch = Utils.join(BRANCHES_FOLDER, REPO.getCurrentBranch());
-        String uid = Utils.readContentsAsString(branch);
+        String branch = REPO.getCurrentBranch();
+        String uid = REPO.getBranchId(branch);
         Commit now = new Commit(message, uid, "");
         REPO.updateCommit(now);
-        REPO.updateBranch(branch, now);
+        REPO.updateBranch(branch, now, "commit: " + message);
         REPO.clearStagingArea();
     }
 
@@ -183,47 +252,18 @@ public class Main {
             System.out.println("No reason to remove the file.");
             System.exit(0);
         }
-        File toAdd = Utils.join(ADDITION, filename);
-        if (toAdd.isFile()) {
-            toAdd.delete();
-        }
+        REPO.unstage(ADDITION, filename);
         if (current.getBlobs().keySet().contains(filename)) {
             File target = Utils.join(CWD, filename);
             if (target.isFile()) {
                 target.delete();
             }
-            File toRemove = Utils.join(REMOVAL, filename);
-            toRemove.createNewFile();
+            REPO.stageRemoval(filename);
         }
     }
 
     private static boolean stagedToAdd(String filename) {
-        boolean staged = false;
-        for (File added : ADDITION.listFiles()) {
-            if (added.getName().equals(filename)) {
-                staged = true;
-            }
-        }
-        return staged;
-    }
-
-    private static boolean stagedToRemove(String filename) {
-        boolean staged = false;
-        for (File removed : REMOVAL.listFiles()) {
-            if (removed.getName().equals(filename)) {
-                staged = true;
-            }
-        }
-        return staged;
-    }
-
-    private static void log() {
-        Commit current = getCurrent();
-        while (!current.getDad().equals("")) {
-            printLog(current);
-            current = getParent(current);
-        }
-        printLog(current);
+        return REPO.isStaged(ADDITION, filename);
     }
 
     private static void printLog(Commit current) {
@@ -261,62 +301,62 @@ public class Main {
         statusStaged();
         statusRemoved();
         System.out.println("=== Modifications Not Staged For Commit ===");
-        Commit current = getCurrent();
         ArrayList<String> modifications = new ArrayList<>();
-        for (String fileName : current.getBlobs().keySet()) {
-            File inCWD = Utils.join(CWD, fileName);
-            if (!inCWD.isFile() && !stagedToRemove(fileName)) {
-                modifications.add(fileName + " (deleted)");
-            }
-            if (inCWD.isFile()) {
-                String fName = current.getBlobs().get(fileName);
-                File inBlobsFolder = Utils.join(BLOBS_FOLDER, fName);
-                String contentCWD = Utils.readContentsAsString(inCWD);
-                String contentBlob = Utils.readContentsAsString(inBlobsFolder);
-                if (!contentCWD.equals(contentBlob) && !stagedToAdd(fileName)) {
-                    modifications.add(fileName + " (modified)");
-                }
-            }
-        }
-        for (File added : ADDITION.listFiles()) {
-            File inCWD = Utils.join(CWD, added.getName());
-            if (!inCWD.isFile()) {
-                modifications.add(added.getName() + " (deleted)");
-            }
-            String contentAdded = Utils.readContentsAsString(added);
-            String contentCWD = Utils.readContentsAsString(inCWD);
-            if (!contentAdded.equals(contentCWD)) {
-                modifications.add(added.getName() + " (modified)");
-            }
-        }
+        ArrayList<String> untracked = new ArrayList<>();
+        statusChanges(modifications, untracked);
         Collections.sort(modifications);
         for (String mod : modifications) {
             System.out.println(mod);
         }
         System.out.println();
-        statusUntracked(current);
-    }
-
-    private static void statusUntracked(Commit current) {
         System.out.println("=== Untracked Files ===");
-        ArrayList<String> untracked = new ArrayList<>();
-        for (File inCWD : CWD.listFiles()) {
-            boolean sr = !stagedToRemove(inCWD.getName());
-            boolean sa = !stagedToAdd(inCWD.getName());
-            boolean tr = !current.getBlobs().keySet().contains(inCWD.getName());
-            if (sr && sa && tr && notgit(inCWD)) {
-                untracked.add(inCWD.getName());
-            }
-        }
-        Collections.sort(untracked);
         for (String un : untracked) {
             System.out.println(un);
         }
     }
 
+    /** Add the modifications not staged for commit to MODIFICATIONS and
+     *  the untracked files to UNTRACKED, in one walk over the head commit,
+     *  the staging area and the working directory. */
+    private static void statusChanges(ArrayList<String> modifications,
+                                      ArrayList<String> untracked) {
+        TreeWalk walk = new TreeWalk();
+        int head = walk.add(getCurrent().getBlobs());
+        int work = walk.add(WorkDir.tree(), WorkDir::contentId);
+        int added = walk.add(TreeWalk.paths(REPO.staged(ADDITION)),
+                             f -> hash(Utils.readContents(
+                                           Utils.join(ADDITION, f))));
+        int removed = walk.add(TreeWalk.paths(REPO.staged(REMOVAL)));
+        while (walk.next()) {
+            String fileName = walk.path();
+            boolean inCWD = walk.has(work)
+                || Utils.join(CWD, fileName).isFile();
+            String idCWD = walk.has(work) ? walk.id(work)
+                : inCWD ? WorkDir.contentId(fileName) : null;
+            if (walk.has(head) && Sparse.includes(fileName)) {
+                if (!inCWD && !walk.has(removed)) {
+                    modifications.add(fileName + " (deleted)");
+                }
+                if (inCWD && !walk.id(head).equals(idCWD)
+                    && !walk.has(added)) {
+                    modifications.add(fileName + " (modified)");
+                }
+            }
+            if (walk.has(added) && idCWD == null) {
+                modifications.add(fileName + " (deleted)");
+            } else if (walk.has(added) && !idCWD.equals(walk.id(added))) {
+                modifications.add(fileName + " (modified)");
+            }
+            if (walk.has(work) && !walk.has(removed) && !walk.has(added)
+                && !walk.has(head) && Sparse.includes(fileName)) {
+                untracked.add(fileName);
+            }
+        }
+    }
+
     private static void statusRemoved() {
         System.out.println("=== Removed Files ===");
-        for (String removed : sortFileNames(REMOVAL)) {
+        for (String removed : REPO.staged(REMOVAL)) {
             System.out.println(removed);
         }
         System.out.println();
@@ -324,7 +364,7 @@ public class Main {
 
     private static void statusStaged() {
         System.out.println("=== Staged Files ===");
-        for (String added : sortFileNames(ADDITION)) {
+        for (String added : REPO.staged(ADDITION)) {
             System.out.println(added);
         }
         System.out.println();
@@ -332,10 +372,9 @@ public class Main {
 
     private static void statusBranch() {
         System.out.println("=== Branches ===");
-        ArrayList<String> branchNames = sortFileNames(BRANCHES_FOLDER);
-        branchNames.remove("current_branch");
-        for (String branch : branchNames) {
-            if (branch.equals(REPO.getCurrentBranch())) {
+        String current = REPO.getCurrentBranch();
+        for (String branch : REPO.branchNames()) {
+            if (branch.equals(current)) {
                 System.out.print("*");
             }
             System.out.println(branch);
@@ -343,15 +382,6 @@ public class Main {
         System.out.println();
     }
 
-    private static ArrayList<String> sortFileNames(File directory) {
-        ArrayList<String> fileNames = new ArrayList<>();
-        for (File file : directory.listFiles()) {
-            fileNames.add(file.getName());
-        }
-        Collections.sort(fileNames);
-        return fileNames;
-    }
-
     private static void checkoutFile(String f) throws FileNotFoundException {
         Commit current = getCurrent();
         checkout(f, current);
@@ -363,8 +393,10 @@ public class Main {
         checkout(f, current);
     }
 
-    private static String abbreviated(String commitID) {
-        if (commitID.length() < UID_LENGTH) {
+    /** Return the full id of the commit whose id starts with COMMITID, or
+     *  COMMITID itself if there is none. */
+    static String abbreviated(String commitID) {
+        if (commitID.length() < HashFunction.current().idLength()) {
             for (File commit : COMMITS_FOLDER.listFiles()) {
                 String uid = Utils.readObject(commit, Commit.class).getUid();
                 if (uid.startsWith(commitID)) {
@@ -375,13 +407,15 @@ public class Main {
         return commitID;
     }
 
-    private static Commit commitExists(String commitID) {
-        File commit = Utils.join(COMMITS_FOLDER, sha1(commitID));
+    /** Return the commit whose id is COMMITID, exiting with a message if
+     *  there is none. */
+    static Commit commitExists(String commitID) {
+        File commit = Utils.join(COMMITS_FOLDER, hash(commitID));
         if (!commit.isFile()) {
             System.out.println("No commit with that id exists.");
             System.exit(0);
         }
-        return Utils.readObject(commit, Commit.class);
+        return REPO.readCommit(commitID);
     }
 
     private static void checkoutBranch(String branchname) throws IOException {
@@ -389,45 +423,16 @@ public class Main {
             System.out.println("No need to checkout the current branch.");
             System.exit(0);
         }
+        Worktree.notCheckedOutElsewhere(branchname);
         Commit current = getCurrent();
-        for (File untracked : CWD.listFiles()) {
-            String name = untracked.getName();
-            boolean nTracked = !current.getBlobs().keySet().contains(name);
-            if (nTracked && notgit(untracked)) {
-                String m1 = "There is an untracked file in the way; ";
-                String m2 = "delete it, or add and commit it first.";
-                System.out.println(m1 + m2);
-                System.exit(0);
-            }
-        }
-        File target = Utils.join(BRANCHES_FOLDER, branchname);
-        String content = Utils.readContentsAsString(target);
-        File found = Utils.join(COMMITS_FOLDER, sha1(content));
-        Commit head = Utils.readObject(found, Commit.class);
-        for (String filename : head.getBlobs().keySet()) {
-            com(Utils.readContentsAsString(target), filename);
-        }
-        for (File stranger : CWD.listFiles()) {
-            boolean nt = !head.getBlobs().keySet().contains(stranger.getName());
-            if (nt && notgit(stranger)) {
-                Utils.restrictedDelete(stranger);
-            }
-        }
+        Commit head = REPO.getHeadOfBranch(branchname);
+        Checkout.apply(current, head);
         REPO.setCurrentBranch(branchname);
         REPO.clearStagingArea();
     }
 
-    private static boolean notgit(File inCWD) {
-        return !inCWD.getName().equals(".gitlet");
-    }
-
     private static boolean isBranch(String branchname) {
-        for (File branch : BRANCHES_FOLDER.listFiles()) {
-            if (branch.getName().equals(branchname)) {
-                return true;
-            }
-        }
-        return false;
+        return REPO.isBranch(branchname);
     }
 
     private static boolean isCurrentBranch(String branchname) {
@@ -436,11 +441,7 @@ public class Main {
 
     private static void checkout(String f, Commit c) {
         fileInCommit(f, c);
-        String target = c.getBlobs().get(f);
-        File blob = Utils.join(BLOBS_FOLDER, target);
-        String contents = Utils.readContentsAsString(blob);
-        File victim = Utils.join(CWD, f);
-        Utils.writeContents(victim, contents);
+        Checkout.write(f, c.getBlobs().get(f));
     }
 
     private static void fileInCommit(String filename, Commit current) {
@@ -451,11 +452,15 @@ public class Main {
     }
 
     private static void branch(String branchname) throws IOException {
-        for (File branch : BRANCHES_FOLDER.listFiles()) {
-            if (branch.getName().equals(branchname)) {
-                System.out.println("A branch with that name already exists.");
-                System.exit(0);
-            }
+        if (isBranch(branchname)) {
+            System.out.println("A branch with that name already exists.");
+            System.exit(0);
+        }
+        String conflict = REPO.conflictingBranch(branchname);
+        if (conflict != null || branchname.equals(Refs.LEGACY_HEAD)) {
+            System.out.println("A branch name cannot be both a branch and "
+                               + "a directory of branches.");
+            System.exit(0);
         }
         REPO.makeNewBranch(branchname, getCurrent());
     }
@@ -469,39 +474,20 @@ public class Main {
             System.out.println("Cannot remove the current branch.");
             System.exit(0);
         }
-        File target = Utils.join(BRANCHES_FOLDER, branchname);
-        target.delete();
+        Worktree.notCheckedOutElsewhere(branchname);
+        REPO.removeBranch(branchname);
     }
 
     private static void reset(String commitID) throws IOException {
         Commit target = commitExists(abbreviated(commitID));
         Commit current = getCurrent();
-        for (File name : CWD.listFiles()) {
-            boolean ntc = !current.getBlobs().keySet().contains(name.getName());
-            boolean tct = target.getBlobs().keySet().contains(name.getName());
-            if (ntc && tct && notgit(name)) {
-                String m1 = "There is an untracked file in the way;";
-                String m2 = " delete it, or add and commit it first.";
-                System.out.println(m1 + m2);
-                System.exit(0);
-            }
-        }
-        for (String tracked : target.getBlobs().keySet()) {
-            checkout(tracked, target);
-        }
-        for (File stranger : CWD.listFiles()) {
-            String n = stranger.getName();
-            boolean ntc = !target.getBlobs().keySet().contains(n);
-            if (ntc && notgit(stranger)) {
-                stranger.delete();
-            }
-        }
-        File branch = Utils.join(BRANCHES_FOLDER, REPO.getCurrentBranch());
-        REPO.updateBranch(branch, target);
+        Checkout.apply(current, target);
+        REPO.updateBranch(REPO.getCurrentBranch(), target,
+                          "reset: moving to " + target.getUid());
         REPO.clearStagingArea();
     }
 
-    private static void merge(String mBranch) throws IOException {
+    static void merge(String mBranch) throws IOException {
         f0(mBranch);
         Commit merging = REPO.getHeadOfBranch(mBranch);
         HashSet<String> ancs = getAncestorsOfMergingBranch(merging);
@@ -509,53 +495,65 @@ public class Main {
         Commit split = getSplit(ancs, current);
         f1(mBranch, current, split);
         f2(merging, split);
-        HashSet<String> addition = new HashSet<>();
-        HashSet<String> removal = new HashSet<>();
-        HashSet<String> conflict = new HashSet<>();
-        for (String f : split.getBlobs().keySet()) {
-            boolean cMod = modified(current, split, f);
-            boolean mDel = deleted(merging, f);
-            if (!cMod && mDel) {
-                removal.add(f);
-            } else if (deleted(current, f) && mDel) {
-                removal.add(f);
-            } else if (deleted(current, f) && !modified(merging, split, f)) {
-                removal.add(f);
-            } else if (modified(merging, split, f) && !cMod) {
-                addition.add(f);
-            } else if (modified(merging, split, f) && cMod) {
-                if (diffContent(current, merging, f)) {
-                    conflict.add(f);
+        ArrayList<String> addition = new ArrayList<>();
+        ArrayList<String> removal = new ArrayList<>();
+        ArrayList<String> conflict = new ArrayList<>();
+        mergeChanges(split, current, merging, addition, removal, conflict);
+        plus(merging, addition);
+        minus(current, removal);
+        printMM(conflict);
+        cf(merging, current, conflict);
+        cm(mBranch, merging, current);
+    }
+
+    /** Sort the files of SPLIT, CURRENT and MERGING into those to be added
+     *  from MERGING (ADDITION), those to be removed (REMOVAL) and those in
+     *  conflict (CONFLICT), in one walk over the three commits and the
+     *  working directory.  Exit first if an untracked file is in the way
+     *  of any of them. */
+    private static void mergeChanges(Commit split, Commit current,
+                                     Commit merging,
+                                     ArrayList<String> addition,
+                                     ArrayList<String> removal,
+                                     ArrayList<String> conflict) {
+        TreeWalk walk = new TreeWalk();
+        int s = walk.add(split.getBlobs());
+        int c = walk.add(current.getBlobs());
+        int m = walk.add(merging.getBlobs());
+        int w = walk.add(WorkDir.tree());
+        while (walk.next()) {
+            String f = walk.path();
+            boolean cMod = !walk.same(s, c);
+            boolean mMod = !walk.same(s, m);
+            ArrayList<String> change = null;
+            if (walk.has(s)) {
+                if (!cMod && !walk.has(m)) {
+                    change = removal;
+                } else if (!walk.has(c) && !walk.has(m)) {
+                    change = removal;
+                } else if (!walk.has(c) && !mMod) {
+                    change = removal;
+                } else if (mMod && !cMod) {
+                    change = addition;
+                } else if (mMod && !walk.same(c, m)) {
+                    change = conflict;
                 }
+            } else if (walk.has(m) && !walk.has(c)) {
+                change = addition;
+            } else if (walk.has(m) && !walk.same(c, m)) {
+                change = conflict;
             }
-        }
-        for (String fileName : merging.getBlobs().keySet()) {
-            if (deleted(current, fileName) && deleted(split, fileName)) {
-                addition.add(fileName);
-            } else if (deleted(split, fileName)) {
-                if (modified(merging, current, fileName)) {
-                    conflict.add(fileName);
-                }
+            if (change == null) {
+                continue;
             }
-        }
-        for (File inCWD : CWD.listFiles()) {
-            boolean add = addition.contains(inCWD.getName());
-            boolean rem = removal.contains(inCWD.getName());
-            boolean conf = conflict.contains(inCWD.getName());
-            boolean influencedByMerge = add | rem | conf;
-            boolean nt = !current.getBlobs().keySet().contains(inCWD.getName());
-            if (notgit(inCWD) && nt && influencedByMerge) {
+            if (walk.has(w) && !walk.has(c) && Sparse.includes(f)) {
                 untracked();
             }
+            change.add(f);
         }
-        plus(merging, addition);
-        minus(current, removal);
-        printMM(conflict);
-        cf(merging, current, conflict);
-        cm(mBranch, merging, current);
     }
 
-    private static void cf(Commit m, Commit c, HashSet<String> cf) {
+    private static void cf(Commit m, Commit c, ArrayList<String> cf) {
         for (String toConflict : cf) {
             File inCWD = Utils.join(CWD, toConflict);
             String inH = "";
@@ -572,27 +570,35 @@ public class Main {
             }
             writeM(inCWD, inH, inM);
             try {
-                add(inCWD.getName());
+                add(toConflict);
             } catch (IOException e) {
                 e.printStackTrace();
             }
         }
     }
 
-    private static void minus(Commit c, HashSet<String> r) throws IOException {
+    private static void minus(Commit c, ArrayList<String> r)
+        throws IOException {
         for (String toRemove : r) {
             boolean inCwd = Utils.join(CWD, toRemove).isFile();
             boolean tr = c.getBlobs().containsKey(toRemove);
             if (inCwd && tr) {
                 rm(toRemove);
+            } else if (tr && !Sparse.includes(toRemove)) {
+                REPO.stageRemoval(toRemove);
             }
         }
     }
 
-    private static void plus(Commit m, HashSet<String> a) throws IOException {
+    private static void plus(Commit m, ArrayList<String> a)
+        throws IOException {
         for (String plus : a) {
             File inCWD = Utils.join(CWD, plus);
             File blob = Utils.join(BLOBS_FOLDER, m.getBlobs().get(plus));
+            if (!Sparse.includes(plus)) {
+                REPO.stageAddition(plus, Utils.readContents(blob));
+                continue;
+            }
             Utils.writeContents(inCWD, Utils.readContentsAsString(blob));
             add(plus);
         }
@@ -603,16 +609,23 @@ public class Main {
         String m2 = REPO.getCurrentBranch() + ".";
         Commit merge = new Commit(m1 + m2, c.getUid(), m.getUid());
         REPO.updateCommit(merge);
-        REPO.updateBranch(Utils.join(BRANCHES_FOLDER, REPO.getCurrentBranch()), merge);
+        REPO.updateBranch(REPO.getCurrentBranch(), merge, "merge " + mb);
     }
 
-    private static void printMM(HashSet<String> conflict) {
+    private static void printMM(ArrayList<String> conflict) {
         if (conflict.size() > 0) {
             System.out.println("Encountered a merge conflict.");
         }
     }
 
-    private static void untracked() {
+    /** Report incorrect operands and exit. */
+    static void incorrectOperands() {
+        System.out.println("Incorrect operands.");
+        System.exit(0);
+    }
+
+    /** Report that an untracked file is in the way, and exit. */
+    static void untracked() {
         String m1 = "There is an untracked file in the way;";
         String m2 = " delete it, or add and commit it first.";
         System.out.println(m1 + m2);
@@ -620,10 +633,17 @@ public class Main {
     }
 
     private static void writeM(File inCWD, String inH, String inM) {
+        Utils.writeContents(inCWD, conflictText(inH, inM));
+    }
+
+    /** Return the contents of a file in conflict whose version in the
+     *  head commit is INH and in the other commit INM, either of which
+     *  is "" if the file is absent there. */
+    static String conflictText(String inH, String inM) {
         String start = "<<<<<<< HEAD\n";
         String mid = "=======\n";
         String end = ">>>>>>>\n";
-        Utils.writeContents(inCWD, start + inH + mid + inM + end);
+        return start + inH + mid + inM + end;
     }
 
     private static void f0(String mb) {
@@ -635,16 +655,18 @@ public class Main {
             System.out.println("Cannot merge a branch with itself.");
             System.exit(0);
         }
-        if (ADDITION.listFiles().length > 0 | REMOVAL.listFiles().length > 0) {
+        if (!REPO.stagingAreaEmpty()) {
             System.out.println("You have uncommitted changes.");
             System.exit(0);
         }
     }
 
     private static void f1(String mb, Commit c, Commit s) throws IOException {
-
         if (s.getUid().equals(c.getUid())) {
-            checkoutBranch(mb);
+            Commit m = REPO.getHeadOfBranch(mb);
+            Checkout.apply(c, m);
+            REPO.updateBranch(REPO.getCurrentBranch(), m,
+                              "merge " + mb + ": Fast-forward");
             System.out.println("Current branch fast-forwarded.");
             System.exit(0);
         }
@@ -658,24 +680,11 @@ public class Main {
         }
     }
 
-    private static boolean modified(Commit now,  Commit split, String fileName) {
-        String inSplit = split.getBlobs().get(fileName);
-        return !inSplit.equals(now.getBlobs().get(fileName));
-    }
-
     private static boolean deleted(Commit now, String fileName) {
         return !now.getBlobs().containsKey(fileName);
     }
 
-    private static boolean diffContent(Commit one, Commit two, String name) {
-        if (deleted(one, name) | deleted(two, name)) {
-            return true;
-        }
-        String tn = two.getBlobs().get(name);
-        return !one.getBlobs().get(name).equals(tn);
-    }
-
-    private static Commit getSplit(HashSet<String> ancestors, Commit current) {
+    static Commit getSplit(HashSet<String> ancestors, Commit current) {
         Commit split = null;
         if (ancestors.contains(current.getUid())) {
             split = current;
@@ -696,18 +705,14 @@ public class Main {
     }
 
     private static Commit getParent(Commit current) {
-        File parent = Utils.join(COMMITS_FOLDER, sha1(current.getDad()));
-        current = Utils.readObject(parent, Commit.class);
-        return current;
+        return REPO.readCommit(current.getDad());
     }
 
     private static Commit getSecondParent(Commit current) {
-        File secondParent = Utils.join(COMMITS_FOLDER, sha1(current.getMom()));
-        current = Utils.readObject(secondParent, Commit.class);
-        return current;
+        return REPO.readCommit(current.getMom());
     }
 
-    private static HashSet<String> getAncestorsOfMergingBranch(Commit target) {
+    static HashSet<String> getAncestorsOfMergingBranch(Commit target) {
         HashSet<String> ancestors = new HashSet<>();
         ancestors.add(target.getUid());
         while (!target.getMsg().equals("initial commit")) {
@@ -0,0 +1,250 @@
+package gitlet;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+
+/** Reference logs: for HEAD and for each branch, an append-only record of
+ *  every commit it has pointed to, so that a commit left behind by reset
+ *  or a deleted branch can be found again.  Logs live under .gitlet/logs
+ *  (logs/HEAD, and logs/branches/NAME for branch NAME; a linked worktree
+ *  keeps its own HEAD log in its own folder), one entry per line:
+ *
+ *      OLD NEW SECONDS REASON
+ *
+ *  where OLD is all zeros when the branch was created.  Appending is a
+ *  single write to the end of the file.  A log that grows past
+ *  MAX_LOG_BYTES is compacted on the next append by dropping entries older
+ *  than DEFAULT_EXPIRY_DAYS, and then all but the newest MAX_ENTRIES;
+ *  "reflog expire" and gc compact every log the same way.
+ */
+class Reflog {
+
+    /** Folder holding all reference logs. */
+    static final File LOGS_FOLDER = Utils.join(Main.COMMON_FOLDER, "logs");
+    /** Days an entry is kept by default. */
+    static final int DEFAULT_EXPIRY_DAYS = 90;
+    /** Size of a log that triggers compaction. */
+    static final long MAX_LOG_BYTES = 1 << 20;
+    /** Most entries a compacted log keeps. */
+    static final int MAX_ENTRIES = 4096;
+
+    /** One entry of a log. */
+    static class Entry {
+        /** An entry moving from OLD (null if none) to NOW at SECONDS since
+         *  the epoch because of REASON. */
+        Entry(String old, String now, long seconds, String reason) {
+            this.old = old;
+            this.now = now;
+            this.seconds = seconds;
+            this.reason = reason;
+        }
+
+        /** The previous commit, or null. */
+        final String old;
+        /** The new commit. */
+        final String now;
+        /** When, in seconds since the epoch. */
+        final long seconds;
+        /** Why. */
+        final String reason;
+    }
+
+    /** Run reflog with ARGS, which starts with "reflog":
+     *      reflog [REF]                  show the log of REF (default HEAD)
+     *      reflog expire [--expire=DAYS] compact every log */
+    static void run(String... args) {
+        if (args.length >= 2 && args[1].equals("expire")) {
+            int days = DEFAULT_EXPIRY_DAYS;
+            String option = "--expire=";
+            if (args.length == 3 && args[2].startsWith(option)) {
+                String value = args[2].substring(option.length());
+                try {
+                    days = Integer.parseInt(value);
+                } catch (NumberFormatException excp) {
+                    Main.incorrectOperands();
+                }
+            } else if (args.length != 2) {
+                Main.incorrectOperands();
+            }
+            int dropped = expire(days);
+            System.out.println("Expired " + dropped + " reflog entries.");
+        } else if (args.length <= 2) {
+            String ref = args.length == 2 ? args[1] : "HEAD";
+            File log = ref.equals("HEAD") ? headLog() : branchLog(ref);
+            if (!ref.equals("HEAD") && !Main.REPO.isBranch(ref)) {
+                System.out.println("A branch with that name does not exist.");
+                System.exit(0);
+            }
+            show(ref, read(log));
+        } else {
+            Main.incorrectOperands();
+        }
+    }
+
+    /** Return the log of HEAD. */
+    static File headLog() {
+        return Utils.join(Main.GITLET_FOLDER, "logs", "HEAD");
+    }
+
+    /** Return the log of branch NAME. */
+    static File branchLog(String name) {
+        return Utils.join(LOGS_FOLDER, "branches", name);
+    }
+
+    /** Record in LOG a move from OLD (null if none) to NOW because of
+     *  REASON. */
+    static void append(File log, String old, String now, String reason) {
+        if (old == null) {
+            old = "0".repeat(HashFunction.current().idLength());
+        }
+        String line = old + " " + now + " "
+            + System.currentTimeMillis() / 1000 + " "
+            + reason.replace('\n', ' ') + "\n";
+        File parent = log.getParentFile();
+        if (!parent.isDirectory()) {
+            parent.mkdirs();
+        }
+        try (FileOutputStream out = new FileOutputStream(log, true)) {
+            out.write(line.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        if (log.length() > MAX_LOG_BYTES) {
+            compact(log, cutoff(DEFAULT_EXPIRY_DAYS));
+        }
+    }
+
+    /** Delete the log of branch NAME, as when the branch is removed. */
+    static void delete(String name) {
+        File log = branchLog(name);
+        log.delete();
+        File root = Utils.join(LOGS_FOLDER, "branches");
+        File dir = log.getParentFile();
+        while (dir != null && !dir.equals(root) && dir.delete()) {
+            dir = dir.getParentFile();
+        }
+    }
+
+    /** Return the entries of LOG, oldest first. */
+    static ArrayList<Entry> read(File log) {
+        ArrayList<Entry> result = new ArrayList<>();
+        if (!log.isFile()) {
+            return result;
+        }
+        for (String line : Utils.readContentsAsString(log).split("\n")) {
+            String[] fields = line.split(" ", 4);
+            if (fields.length < 4) {
+                continue;
+            }
+            String old = fields[0].matches("0+") ? null : fields[0];
+            result.add(new Entry(old, fields[1], Long.parseLong(fields[2]),
+                                 fields[3]));
+        }
+        return result;
+    }
+
+    /** Add every commit id recorded in any log to IDS. */
+    static void collectIds(Collection<String> ids) {
+        for (File log : allLogs()) {
+            for (Entry entry : read(log)) {
+                if (entry.old != null) {
+                    ids.add(entry.old);
+                }
+                ids.add(entry.now);
+            }
+        }
+    }
+
+    /** Compact every log, dropping entries older than DAYS days, and
+     *  return the number of entries dropped. */
+    static int expire(int days) {
+        long cutoff = cutoff(days);
+        int dropped = 0;
+        for (File log : allLogs()) {
+            dropped += compact(log, cutoff);
+        }
+        return dropped;
+    }
+
+    /** Print ENTRIES of the log of REF, newest first. */
+    private static void show(String ref, ArrayList<Entry> entries) {
+        StringBuilder out = new StringBuilder();
+        for (int i = entries.size() - 1, n = 0; i >= 0; i -= 1, n += 1) {
+            Entry entry = entries.get(i);
+            out.append(entry.now).append(' ').append(ref).append("@{")
+                .append(n).append("}: ").append(entry.reason).append('\n');
+        }
+        System.out.print(out);
+    }
+
+    /** Rewrite LOG without entries from before CUTOFF (in seconds since
+     *  the epoch), keeping at most MAX_ENTRIES, and return the number of
+     *  entries dropped. */
+    private static int compact(File log, long cutoff) {
+        ArrayList<Entry> entries = read(log);
+        ArrayList<Entry> kept = new ArrayList<>();
+        for (Entry entry : entries) {
+            if (entry.seconds >= cutoff) {
+                kept.add(entry);
+            }
+        }
+        if (kept.size() > MAX_ENTRIES) {
+            kept = new ArrayList<>(kept.subList(kept.size() - MAX_ENTRIES,
+                                                kept.size()));
+        }
+        if (kept.size() == entries.size()) {
+            return 0;
+        }
+        String zeros = "0".repeat(HashFunction.current().idLength());
+        StringBuilder out = new StringBuilder();
+        for (Entry entry : kept) {
+            out.append(entry.old == null ? zeros : entry.old).append(' ')
+                .append(entry.now).append(' ').append(entry.seconds)
+                .append(' ').append(entry.reason).append('\n');
+        }
+        Utils.writeContents(log, out.toString());
+        return entries.size() - kept.size();
+    }
+
+    /** Return the time DAYS days ago, in seconds since the epoch.  Zero
+     *  days expires everything. */
+    private static long cutoff(int days) {
+        if (days <= 0) {
+            return Long.MAX_VALUE;
+        }
+        return System.currentTimeMillis() / 1000 - days * 86400L;
+    }
+
+    /** Return every log file. */
+    private static ArrayList<File> allLogs() {
+        ArrayList<File> result = new ArrayList<>();
+        collectLogs(LOGS_FOLDER, result);
+        File[] worktrees =
+            Utils.join(Main.COMMON_FOLDER, "worktrees").listFiles();
+        if (worktrees != null) {
+            for (File worktree : worktrees) {
+                collectLogs(Utils.join(worktree, "logs"), result);
+            }
+        }
+        return result;
+    }
+
+    /** Add the log files under DIR to RESULT. */
+    private static void collectLogs(File dir, ArrayList<File> result) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.isDirectory()) {
+                collectLogs(file, result);
+            } else {
+                result.add(file);
+            }
+        }
+    }
+}
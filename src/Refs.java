@@ -0,0 +1,336 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.TreeMap;
+
+/** The branches of one repository.  A branch is either loose, a file
+ *  under branches/ holding the uid of its head (branch names may contain
+ *  slashes, which become directories), or packed, a line of the
+ *  packed-refs file.  A loose branch overrides a packed one of the same
+ *  name, so moving a branch only ever writes its own small file, and
+ *  pack-refs folds the loose branches back into the table.
+ *
+ *  packed-refs is a header line followed by lines "UID NAME", sorted by
+ *  the UTF-8 bytes of NAME.  It is memory-mapped and searched by bisection
+ *  on byte offsets, backing up from each probe to the start of its line,
+ *  so finding one branch among many touches only a few pages.
+ */
+class Refs {
+
+    /** Name of the packed table within a .gitlet directory. */
+    static final String PACKED_NAME = "packed-refs";
+    /** Name of the file that held the current branch's name before it
+     *  moved out of branches/; never a branch. */
+    static final String LEGACY_HEAD = "current_branch";
+
+    /** First line of packed-refs. */
+    private static final String HEADER = "# gitlet packed-refs\n";
+    /** Mapping used when there is no packed-refs file. */
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+    /** The branches of the repository whose .gitlet directory is DIR. */
+    Refs(File dir) {
+        _loose = Utils.join(dir, "branches");
+        _packedFile = Utils.join(dir, PACKED_NAME);
+    }
+
+    /** Return the uid of the head of branch NAME, or null if there is no
+     *  such branch. */
+    String get(String name) {
+        File loose = looseFile(name);
+        if (loose != null && loose.isFile()) {
+            return Utils.readContentsAsString(loose);
+        }
+        ByteBuffer packed = packed();
+        int line = lowerBound(packed, bytes(name));
+        if (line < packed.limit() && compareName(packed, line,
+                                                 bytes(name)) == 0) {
+            return idAt(packed, line);
+        }
+        return null;
+    }
+
+    /** Return true iff NAME is a branch. */
+    boolean contains(String name) {
+        return get(name) != null;
+    }
+
+    /** Point branch NAME at UID, creating it if need be. */
+    void set(String name, String uid) {
+        File loose = looseFile(name);
+        String conflict = conflict(name);
+        if (loose == null || conflict != null) {
+            throw Utils.error("Branch name %s conflicts with %s.", name,
+                              conflict == null ? LEGACY_HEAD : conflict);
+        }
+        loose.getParentFile().mkdirs();
+        Utils.writeContents(loose, uid);
+    }
+
+    /** Remove branch NAME, which must exist. */
+    void delete(String name) {
+        File loose = looseFile(name);
+        if (loose != null && loose.delete()) {
+            pruneDirectories(loose.getParentFile());
+        }
+        ByteBuffer packed = packed();
+        int line = lowerBound(packed, bytes(name));
+        if (line < packed.limit()
+            && compareName(packed, line, bytes(name)) == 0) {
+            TreeMap<String, String> table = readPacked();
+            table.remove(name);
+            writePacked(table);
+        }
+    }
+
+    /** Return the branches and their heads, in name order. */
+    TreeMap<String, String> all() {
+        TreeMap<String, String> result = readPacked();
+        collectLoose(_loose, "", result, true);
+        return result;
+    }
+
+    /** Return the names of all branches in sorted order, without reading
+     *  any loose branch. */
+    ArrayList<String> names() {
+        TreeMap<String, String> result = readPacked();
+        collectLoose(_loose, "", result, false);
+        return new ArrayList<>(result.keySet());
+    }
+
+    /** Return the name of an existing branch that a branch NAME could not
+     *  exist beside, being a directory of the other's name or vice versa
+     *  (as "team" and "team/feature"), or null if there is none. */
+    String conflict(String name) {
+        int k = name.indexOf('/');
+        while (k >= 0) {
+            if (contains(name.substring(0, k))) {
+                return name.substring(0, k);
+            }
+            k = name.indexOf('/', k + 1);
+        }
+        String prefix = name + "/";
+        ByteBuffer packed = packed();
+        int line = lowerBound(packed, bytes(prefix));
+        if (line < packed.limit()
+            && nameAt(packed, line).startsWith(prefix)) {
+            return nameAt(packed, line);
+        }
+        File dir = Utils.join(_loose, name);
+        if (dir.isDirectory()) {
+            TreeMap<String, String> under = new TreeMap<>();
+            collectLoose(dir, prefix, under, false);
+            if (!under.isEmpty()) {
+                return under.firstKey();
+            }
+        }
+        return null;
+    }
+
+    /** Move every loose branch into packed-refs, and return the number of
+     *  branches there now. */
+    int pack() {
+        TreeMap<String, String> table = all();
+        writePacked(table);
+        TreeMap<String, String> loose = new TreeMap<>();
+        collectLoose(_loose, "", loose, false);
+        for (String name : loose.keySet()) {
+            File file = looseFile(name);
+            file.delete();
+            pruneDirectories(file.getParentFile());
+        }
+        return table.size();
+    }
+
+    /** Return the loose file of branch NAME, or null if NAME cannot be a
+     *  branch. */
+    private File looseFile(String name) {
+        if (name.isEmpty() || name.equals(LEGACY_HEAD)) {
+            return null;
+        }
+        return Utils.join(_loose, name);
+    }
+
+    /** Delete DIR and then its parents while they are empty, stopping at
+     *  the branches folder itself. */
+    private void pruneDirectories(File dir) {
+        while (dir != null && !dir.equals(_loose) && dir.delete()) {
+            dir = dir.getParentFile();
+        }
+    }
+
+    /** Add the loose branches under DIR, whose names start with PREFIX, to
+     *  RESULT, with their heads iff READ (and otherwise with empty
+     *  heads). */
+    private void collectLoose(File dir, String prefix,
+                              TreeMap<String, String> result, boolean read) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.isDirectory()) {
+                collectLoose(file, prefix + file.getName() + "/", result,
+                             read);
+            } else if (!(prefix + file.getName()).equals(LEGACY_HEAD)) {
+                result.put(prefix + file.getName(),
+                           read ? Utils.readContentsAsString(file) : "");
+            }
+        }
+    }
+
+    /** Return the contents of packed-refs, mapped on first use. */
+    private ByteBuffer packed() {
+        if (_packed == null) {
+            _packed = EMPTY;
+            if (_packedFile.isFile()) {
+                try (FileChannel channel =
+                         FileChannel.open(_packedFile.toPath(),
+                                          StandardOpenOption.READ)) {
+                    _packed = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                                          channel.size());
+                } catch (IOException excp) {
+                    throw new IllegalArgumentException(excp.getMessage());
+                }
+                byte[] header = bytes(HEADER);
+                for (int i = 0; i < header.length; i += 1) {
+                    if (i >= _packed.limit() || _packed.get(i) != header[i]) {
+                        throw Utils.error("Damaged %s.", PACKED_NAME);
+                    }
+                }
+            }
+        }
+        return _packed;
+    }
+
+    /** Return the offset of the first line of PACKED whose name is not
+     *  less than NAME, or its length if there is none. */
+    private static int lowerBound(ByteBuffer packed, byte[] name) {
+        int lo = Math.min(HEADER.length(), packed.limit());
+        int hi = packed.limit();
+        while (lo < hi) {
+            int mid = lo + (hi - lo) / 2;
+            while (mid > lo && packed.get(mid - 1) != '\n') {
+                mid -= 1;
+            }
+            if (compareName(packed, mid, name) < 0) {
+                lo = endOfLine(packed, mid) + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /** Compare the name on the line of PACKED starting at LINE with NAME,
+     *  byte by byte, returning <0, 0 or >0. */
+    private static int compareName(ByteBuffer packed, int line, byte[] name) {
+        int p = startOfName(packed, line);
+        int end = endOfLine(packed, line);
+        for (int i = 0; i < name.length; i += 1, p += 1) {
+            if (p == end) {
+                return -1;
+            }
+            int c = Integer.compare(packed.get(p) & 0xff, name[i] & 0xff);
+            if (c != 0) {
+                return c;
+            }
+        }
+        return p == end ? 0 : 1;
+    }
+
+    /** Return the offset of the newline ending the line at LINE in
+     *  PACKED. */
+    private static int endOfLine(ByteBuffer packed, int line) {
+        int p = line;
+        while (p < packed.limit() && packed.get(p) != '\n') {
+            p += 1;
+        }
+        return p;
+    }
+
+    /** Return the offset of the name on the line at LINE in PACKED. */
+    private static int startOfName(ByteBuffer packed, int line) {
+        int p = line;
+        while (packed.get(p) != ' ') {
+            p += 1;
+        }
+        return p + 1;
+    }
+
+    /** Return the uid on the line at LINE in PACKED. */
+    private static String idAt(ByteBuffer packed, int line) {
+        return text(packed, line, startOfName(packed, line) - 1);
+    }
+
+    /** Return the name on the line at LINE in PACKED. */
+    private static String nameAt(ByteBuffer packed, int line) {
+        return text(packed, startOfName(packed, line),
+                    endOfLine(packed, line));
+    }
+
+    /** Return the bytes of PACKED from START to END as a String. */
+    private static String text(ByteBuffer packed, int start, int end) {
+        byte[] result = new byte[end - start];
+        packed.get(start, result);
+        return new String(result, StandardCharsets.UTF_8);
+    }
+
+    /** Return the whole packed table. */
+    private TreeMap<String, String> readPacked() {
+        TreeMap<String, String> result = new TreeMap<>();
+        ByteBuffer packed = packed();
+        for (int line = Math.min(HEADER.length(), packed.limit());
+             line < packed.limit(); line = endOfLine(packed, line) + 1) {
+            result.put(nameAt(packed, line), idAt(packed, line));
+        }
+        return result;
+    }
+
+    /** Replace packed-refs by TABLE, through a rename so that readers see
+     *  either the old table or the new one. */
+    private void writePacked(TreeMap<String, String> table) {
+        ArrayList<byte[]> names = new ArrayList<>();
+        for (String name : table.keySet()) {
+            names.add(bytes(name));
+        }
+        names.sort(Arrays::compareUnsigned);
+        StringBuilder out = new StringBuilder(HEADER);
+        for (byte[] name : names) {
+            String text = new String(name, StandardCharsets.UTF_8);
+            out.append(table.get(text)).append(' ').append(text)
+                .append('\n');
+        }
+        File temp = new File(_packedFile.getPath() + ".lock");
+        Utils.writeContents(temp, out.toString());
+        try {
+            Files.move(temp.toPath(), _packedFile.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        _packed = null;
+    }
+
+    /** Return the UTF-8 bytes of S. */
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** Folder of loose branches. */
+    private final File _loose;
+    /** The packed-refs file. */
+    private final File _packedFile;
+    /** Contents of packed-refs, or null if not yet mapped. */
+    private ByteBuffer _packed;
+}
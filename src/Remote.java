@@ -0,0 +1,213 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static gitlet.Utils.hash;
+
+/** Commands for remotes: other .gitlet directories on the local
+ *  filesystem.  fetch and push compare commit graphs to find the commits
+ *  the receiving side lacks, stopping at the first commit it already has,
+ *  and copy only those commits and the blobs missing from the receiver.
+ */
+class Remote {
+
+    /** Folder holding one file per remote, containing its directory. */
+    static final File REMOTES_FOLDER =
+        Utils.join(Main.COMMON_FOLDER, "remotes");
+
+    /** Remember DIR, the .gitlet directory of another repository, as the
+     *  remote NAME. */
+    static void addRemote(String name, String dir) {
+        File remote = Utils.join(REMOTES_FOLDER, name);
+        if (remote.isFile()) {
+            System.out.println("A remote with that name already exists.");
+            System.exit(0);
+        }
+        REMOTES_FOLDER.mkdir();
+        Utils.writeContents(remote, dir.replace("/", File.separator));
+    }
+
+    /** Forget the remote NAME. */
+    static void removeRemote(String name) {
+        File remote = Utils.join(REMOTES_FOLDER, name);
+        if (!remote.isFile()) {
+            System.out.println("A remote with that name does not exist.");
+            System.exit(0);
+        }
+        remote.delete();
+    }
+
+    /** Copy the history of BRANCH in remote NAME into this repository as
+     *  the branch NAME/BRANCH. */
+    static void fetch(String name, String branch) {
+        File dir = remoteDir(name);
+        String tip = new Refs(dir).get(branch);
+        if (tip == null) {
+            System.out.println("That remote does not have that branch.");
+            System.exit(0);
+        }
+        Transfer transfer = new Transfer(dir, Main.COMMON_FOLDER);
+        transfer.copy(tip);
+        File commit = Utils.join(Main.COMMITS_FOLDER, hash(tip));
+        Main.REPO.updateBranch(name + "/" + branch,
+                               Utils.readObject(commit, Commit.class),
+                               "fetch: " + name + " " + branch);
+        transfer.report();
+    }
+
+    /** Copy the history of the current branch to BRANCH in remote NAME and
+     *  move that branch to the current head, provided the remote branch's
+     *  head is already in the current branch's history. */
+    static void push(String name, String branch) {
+        File dir = remoteDir(name);
+        String local = Main.getCurrent().getUid();
+        Refs refs = new Refs(dir);
+        String head = refs.get(branch);
+        if (head != null && !isAncestor(head, local)) {
+            System.out.println("Please pull down remote changes before "
+                               + "pushing.");
+            System.exit(0);
+        }
+        Transfer transfer = new Transfer(Main.COMMON_FOLDER, dir);
+        transfer.copy(local);
+        refs.set(branch, local);
+        transfer.report();
+    }
+
+    /** Fetch BRANCH from remote NAME and merge it into the current
+     *  branch. */
+    static void pull(String name, String branch) throws IOException {
+        fetch(name, branch);
+        Main.merge(name + "/" + branch);
+    }
+
+    /** Return the .gitlet directory of remote NAME, exiting if there is no
+     *  such remote, its directory is gone or its ids are of a different
+     *  object format. */
+    private static File remoteDir(String name) {
+        File remote = Utils.join(REMOTES_FOLDER, name);
+        if (!remote.isFile()) {
+            System.out.println("A remote with that name does not exist.");
+            System.exit(0);
+        }
+        File dir = new File(Utils.readContentsAsString(remote));
+        if (!dir.isDirectory()) {
+            System.out.println("Remote directory not found.");
+            System.exit(0);
+        }
+        if (HashFunction.of(dir) != HashFunction.current()) {
+            System.out.println("Remote uses a different object format.");
+            System.exit(0);
+        }
+        return dir;
+    }
+
+    /** Return true iff commit ANCESTOR is in the history of commit
+     *  DESCENDANT in this repository. */
+    static boolean isAncestor(String ancestor, String descendant) {
+        HashSet<String> seen = new HashSet<>();
+        ArrayDeque<String> work = new ArrayDeque<>();
+        work.push(descendant);
+        while (!work.isEmpty()) {
+            String uid = work.pop();
+            if (uid.equals(ancestor)) {
+                return true;
+            }
+            if (uid.equals("") || !seen.add(uid)) {
+                continue;
+            }
+            File file = Utils.join(Main.COMMITS_FOLDER, hash(uid));
+            Commit commit = Utils.readObject(file, Commit.class);
+            work.push(commit.getDad());
+            work.push(commit.getMom());
+        }
+        return false;
+    }
+
+    /** A copy of commits and blobs from one .gitlet directory to
+     *  another. */
+    private static class Transfer {
+
+        /** A transfer from the .gitlet directory SOURCE to DEST. */
+        Transfer(File source, File dest) {
+            _source = source;
+            _dest = dest;
+        }
+
+        /** Copy the commit TIP and all of its history that DEST lacks,
+         *  together with their blobs missing from DEST.  Blobs are copied
+         *  before commits, so DEST never holds a commit without its blobs,
+         *  and a commit DEST already has is taken to come with its
+         *  history. */
+        void copy(String tip) {
+            ArrayList<String> commits = new ArrayList<>();
+            TreeSet<String> blobs = new TreeSet<>();
+            HashSet<String> seen = new HashSet<>();
+            ArrayDeque<String> work = new ArrayDeque<>();
+            work.push(tip);
+            while (!work.isEmpty()) {
+                String uid = work.pop();
+                if (uid.equals("") || !seen.add(uid)
+                    || commitFile(_dest, uid).isFile()) {
+                    continue;
+                }
+                Commit commit =
+                    Utils.readObject(commitFile(_source, uid), Commit.class);
+                commits.add(uid);
+                for (String blob : commit.getBlobs().values()) {
+                    if (!Utils.join(_dest, "blobs", blob).isFile()) {
+                        blobs.add(blob);
+                    }
+                }
+                work.push(commit.getDad());
+                work.push(commit.getMom());
+            }
+            Workers.forEach(blobs, id ->
+                copyFile(Utils.join(_source, "blobs", id),
+                         Utils.join(_dest, "blobs", id)));
+            Workers.forEach(commits, uid ->
+                copyFile(commitFile(_source, uid), commitFile(_dest, uid)));
+        }
+
+        /** Print how much was copied. */
+        void report() {
+            System.out.println("Transferred " + _objects.get()
+                               + " objects (" + _bytes.get() + " bytes).");
+        }
+
+        /** Return the file holding commit UID under the .gitlet directory
+         *  DIR. */
+        private File commitFile(File dir, String uid) {
+            return Utils.join(dir, "commits", hash(uid));
+        }
+
+        /** Copy FROM to TO, counting the object and its bytes. */
+        private void copyFile(File from, File to) {
+            try {
+                Files.copy(from.toPath(), to.toPath(),
+                           StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+            _objects.incrementAndGet();
+            _bytes.addAndGet(to.length());
+        }
+
+        /** The .gitlet directory objects are copied from. */
+        private final File _source;
+        /** The .gitlet directory objects are copied to. */
+        private final File _dest;
+        /** Number of objects copied. */
+        private final AtomicLong _objects = new AtomicLong();
+        /** Number of bytes copied. */
+        private final AtomicLong _bytes = new AtomicLong();
+    }
+}
@@ -0,0 +1,216 @@
+package gitlet;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/** The commands that replay commits on top of another:
+ *
+ *      cherry-pick COMMIT  make a commit on the current branch with the
+ *                          changes COMMIT made to its first parent
+ *      rebase BRANCH       replay the commits of the current branch since
+ *                          it forked from BRANCH on top of BRANCH
+ *
+ *  Each replayed commit's files are found in memory, by a three-way merge
+ *  (a TreeWalk) of the files of the commit's first parent, the commit
+ *  itself and the commit it is replayed onto: a file takes the replayed
+ *  commit's version if only that commit changed it, and is in conflict if
+ *  both sides changed it differently, in which case it gets the
+ *  conflict-marked contents merge gives it, and the command reports
+ *  "Encountered a merge conflict."  A replayed commit that would change
+ *  nothing is dropped.  Only the new commits and conflict blobs are
+ *  written; the working directory is brought from the old head to the new
+ *  one with Checkout.apply once, at the end, and if an untracked file is
+ *  in the way nothing is changed at all.
+ *
+ *  rebase follows the current branch's first parents back to the first
+ *  commit BRANCH also has, and replays the commits on the way oldest
+ *  first; a merge commit is replayed as the change it made to its first
+ *  parent.  If BRANCH already contains the current branch, the current
+ *  branch is fast-forwarded to it instead.
+ */
+class Replay {
+
+    /** Run cherry-pick with ARGS, which starts with "cherry-pick". */
+    static void cherryPick(String... args) {
+        if (args.length != 2) {
+            Main.incorrectOperands();
+        }
+        Commit picked = Main.commitExists(Main.abbreviated(args[1]));
+        noUncommittedChanges();
+        Commit head = Main.getCurrent();
+        TreeSet<String> conflicts = new TreeSet<>();
+        Commit made = replay(picked, head, conflicts);
+        if (made == null) {
+            System.out.println("No changes added to the commit.");
+            System.exit(0);
+        }
+        ArrayList<Commit> commits = new ArrayList<>();
+        commits.add(made);
+        finish(head, commits, made, "cherry-pick: " + picked.getMsg());
+        reportConflicts(conflicts);
+    }
+
+    /** Run rebase with ARGS, which starts with "rebase". */
+    static void rebase(String... args) {
+        if (args.length != 2) {
+            Main.incorrectOperands();
+        }
+        String upstream = args[1];
+        if (!Main.REPO.isBranch(upstream)) {
+            System.out.println("A branch with that name does not exist.");
+            System.exit(0);
+        }
+        if (upstream.equals(Main.REPO.getCurrentBranch())) {
+            System.out.println("Cannot rebase a branch onto itself.");
+            System.exit(0);
+        }
+        noUncommittedChanges();
+        Commit head = Main.getCurrent();
+        Commit onto = Main.REPO.getHeadOfBranch(upstream);
+        HashSet<String> ancestors = ancestors(onto.getUid());
+        ArrayList<String> todo = new ArrayList<>();
+        String at = head.getUid();
+        while (!ancestors.contains(at)) {
+            todo.add(at);
+            at = Main.REPO.commitGraph().lookup(at).dad;
+        }
+        if (at.equals(onto.getUid())) {
+            System.out.println("Current branch is up to date.");
+            System.exit(0);
+        } else if (todo.isEmpty()) {
+            finish(head, new ArrayList<>(), onto,
+                   "rebase " + upstream + ": Fast-forward");
+            System.out.println("Current branch fast-forwarded.");
+            System.exit(0);
+        }
+        TreeSet<String> conflicts = new TreeSet<>();
+        ArrayList<Commit> commits = new ArrayList<>();
+        Commit tip = onto;
+        try (Trace.Phase p = Trace.phase("rebase.replay")) {
+            for (int i = todo.size() - 1; i >= 0; i -= 1) {
+                Commit made = replay(Main.REPO.readCommit(todo.get(i)), tip,
+                                     conflicts);
+                if (made != null) {
+                    commits.add(made);
+                    tip = made;
+                }
+            }
+        }
+        finish(head, commits, tip, "rebase onto " + upstream);
+        reportConflicts(conflicts);
+    }
+
+    /** Return a commit on top of ONTO making the changes COMMIT made to
+     *  its first parent, adding the files in conflict to CONFLICTS, or
+     *  null if it would change nothing. */
+    private static Commit replay(Commit commit, Commit onto,
+                                 TreeSet<String> conflicts) {
+        TreeMap<String, String> base = commit.getDad().equals("")
+            ? new TreeMap<>()
+            : Main.REPO.readCommit(commit.getDad()).getBlobs();
+        TreeMap<String, String> files =
+            merge(base, onto.getBlobs(), commit.getBlobs(), conflicts);
+        if (files.equals(onto.getBlobs())) {
+            return null;
+        }
+        return new Commit(commit.getMsg(), onto.getUid(), "", new Date(),
+                          files);
+    }
+
+    /** Return the files of a three-way merge of THEIRS into OURS, whose
+     *  common version is BASE, adding the files in conflict to
+     *  CONFLICTS. */
+    private static TreeMap<String, String> merge(
+        TreeMap<String, String> base, TreeMap<String, String> ours,
+        TreeMap<String, String> theirs, TreeSet<String> conflicts) {
+        TreeWalk walk = new TreeWalk();
+        int b = walk.add(base);
+        int o = walk.add(ours);
+        int t = walk.add(theirs);
+        TreeMap<String, String> result = new TreeMap<>();
+        while (walk.next()) {
+            int side = walk.merged(b, o, t);
+            String id;
+            if (side >= 0) {
+                id = walk.id(side);
+            } else {
+                id = conflict(walk.id(o), walk.id(t));
+                conflicts.add(walk.path());
+            }
+            if (id != null) {
+                result.put(walk.path(), id);
+            }
+        }
+        return result;
+    }
+
+    /** Write the blob for a file in conflict whose versions are the blobs
+     *  OURS and THEIRS (null if absent), and return its id. */
+    static String conflict(String ours, String theirs) {
+        byte[] contents = Main.conflictText(text(ours), text(theirs))
+            .getBytes(StandardCharsets.UTF_8);
+        String id = Utils.hash(contents);
+        File blob = Utils.join(Main.BLOBS_FOLDER, id);
+        if (!blob.isFile()) {
+            Utils.writeContents(blob, contents);
+        }
+        return id;
+    }
+
+    /** Return the contents of blob ID, or "" if ID is null. */
+    private static String text(String id) {
+        return id == null ? ""
+            : Utils.readContentsAsString(Utils.join(Main.BLOBS_FOLDER, id));
+    }
+
+    /** Bring the working directory from HEAD to TIP, then write COMMITS
+     *  and point the current branch at TIP because of REASON. */
+    private static void finish(Commit head, ArrayList<Commit> commits,
+                               Commit tip, String reason) {
+        Checkout.apply(head, tip);
+        for (Commit commit : commits) {
+            Main.REPO.updateCommit(commit);
+        }
+        Main.REPO.updateBranch(Main.REPO.getCurrentBranch(), tip, reason);
+        Main.REPO.clearStagingArea();
+    }
+
+    /** Return the ids of the commit UID and all its ancestors. */
+    private static HashSet<String> ancestors(String uid) {
+        CommitGraph graph = Main.REPO.commitGraph();
+        HashSet<String> result = new HashSet<>();
+        ArrayDeque<String> work = new ArrayDeque<>();
+        work.push(uid);
+        while (!work.isEmpty()) {
+            String at = work.pop();
+            if (at.equals("") || !result.add(at)) {
+                continue;
+            }
+            CommitGraph.Entry entry = graph.lookup(at);
+            work.push(entry.dad);
+            work.push(entry.mom);
+        }
+        return result;
+    }
+
+    /** Report a merge conflict if CONFLICTS has any files. */
+    private static void reportConflicts(TreeSet<String> conflicts) {
+        if (!conflicts.isEmpty()) {
+            System.out.println("Encountered a merge conflict.");
+        }
+    }
+
+    /** Exit if anything is staged. */
+    private static void noUncommittedChanges() {
+        if (!Main.REPO.stagingAreaEmpty()) {
+            System.out.println("You have uncommitted changes.");
+            System.exit(0);
+        }
+    }
+}
@@ -2,8 +2,14 @@ package gitlet;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.TreeMap;
 
-import static gitlet.Utils.sha1;
+import static gitlet.Utils.hash;
 
 public class Repo {
     public File getBranches() {
@@ -31,45 +37,279 @@ public class Repo {
     /**  Persisted commits folder. */
     private final File commits = Main.COMMITS_FOLDER;
     /** Persisted file to store current branch name. */
-    private File currentBranch = Utils.join(branches, "current_branch");
+    private File currentBranch = Utils.join(Main.GITLET_FOLDER, "HEAD");
+    /** Where the current branch name was kept before HEAD. */
+    private File legacyCurrentBranch =
+        Utils.join(branches, Refs.LEGACY_HEAD);
+    /** The branches. */
+    private final Refs refs = new Refs(Main.COMMON_FOLDER);
+    /** The commit graph. */
+    private final CommitGraph commitGraph =
+        new CommitGraph(Main.COMMON_FOLDER);
+    /** Most commits kept in the commit cache. */
+    private static final int MAX_CACHED_COMMITS = 1024;
+    /** Most files, counted over all their commits, kept in the commit
+     *  cache. */
+    private static final int MAX_CACHED_PATHS = 1 << 20;
+    /** Commits read recently, by uid, least recently used first. */
+    private final LinkedHashMap<String, Commit> commitCache =
+        new LinkedHashMap<>(16, 0.75f, true);
+    /** Number of files of the commits in commitCache. */
+    private long cachedPaths;
+    /** Name of the current branch, once read. */
+    private String currentBranchName;
 
     public String getCurrentBranch() {
-        return Utils.readContentsAsString(currentBranch);
+        if (currentBranchName != null) {
+            return currentBranchName;
+        }
+        try (Trace.Phase p = Trace.phase("repo.readHead")) {
+            if (!currentBranch.isFile() && legacyCurrentBranch.isFile()) {
+                currentBranchName =
+                    Utils.readContentsAsString(legacyCurrentBranch);
+            } else {
+                currentBranchName = Utils.readContentsAsString(currentBranch);
+            }
+            return currentBranchName;
+        }
     }
 
+    /** Make BRANCHNAME the current branch, recording the move of HEAD in
+     *  its reflog. */
     public void setCurrentBranch(String branchName) throws IOException {
-        Utils.writeContents(this.currentBranch, branchName);
+        try (Trace.Phase p = Trace.phase("repo.writeHead")) {
+            String from = hasCurrentBranch() ? getCurrentBranch() : null;
+            String old = from == null ? null : refs.get(from);
+            Utils.writeContents(this.currentBranch, branchName);
+            legacyCurrentBranch.delete();
+            currentBranchName = branchName;
+            String reason = from == null ? "init"
+                : "checkout: moving from " + from + " to " + branchName;
+            Reflog.append(Reflog.headLog(), old, refs.get(branchName),
+                          reason);
+        }
+    }
+
+    /** Return true iff a current branch has been set, which is so except
+     *  while a repository is being initialized. */
+    private boolean hasCurrentBranch() {
+        return currentBranchName != null || currentBranch.isFile()
+            || legacyCurrentBranch.isFile();
     }
 
     Commit getHeadOfBranch(String branchName) {
-        File branch = Utils.join(branches, branchName);
-        String commitID = Utils.readContentsAsString(branch);
-        File commit = Utils.join(commits, sha1(commitID));
-        Commit found = Utils.readObject(commit, Commit.class);
+        try (Trace.Phase p = Trace.phase("repo.readBranch")) {
+            return readCommit(refs.get(branchName));
+        }
+    }
+
+    /** Return the uid of the head of branch NAME, or null if there is no
+     *  such branch. */
+    String getBranchId(String name) {
+        try (Trace.Phase p = Trace.phase("repo.readBranch")) {
+            return refs.get(name);
+        }
+    }
+
+    /** Return the commit whose id is UID.  Commits never change, so the
+     *  ones used recently are kept and not read from disk again; callers
+     *  must not modify the result or its blobs. */
+    Commit readCommit(String uid) {
+        Commit found;
+        synchronized (commitCache) {
+            found = commitCache.get(uid);
+        }
+        Trace.cache("commits", found != null);
+        if (found == null) {
+            try (Trace.Phase p = Trace.phase("repo.readCommit")) {
+                File commit = Utils.join(commits, hash(uid));
+                found = Utils.readObject(commit, Commit.class);
+            }
+            cache(found);
+        }
         return found;
     }
 
+    /** Keep COMMIT in the commit cache, forgetting the least recently used
+     *  commits once it holds more than MAX_CACHED_COMMITS commits or
+     *  MAX_CACHED_PATHS files, so that walking a long history holds only
+     *  the commits near the walk. */
+    private void cache(Commit commit) {
+        synchronized (commitCache) {
+            Commit old = commitCache.put(commit.getUid(), commit);
+            if (old != null) {
+                cachedPaths -= old.getBlobs().size();
+            }
+            cachedPaths += commit.getBlobs().size();
+            Iterator<Commit> eldest = commitCache.values().iterator();
+            while (commitCache.size() > 1
+                   && (commitCache.size() > MAX_CACHED_COMMITS
+                       || cachedPaths > MAX_CACHED_PATHS)) {
+                cachedPaths -= eldest.next().getBlobs().size();
+                eldest.remove();
+            }
+        }
+    }
+
     void makeNewBranch(String name, Commit current) {
-        File branch = Utils.join(branches, name);
-        Utils.writeContents(branch, current.getUid());
+        setBranch(name, current.getUid(), "branch: Created from "
+                  + current.getUid());
+    }
+
+    /** Return true iff NAME names a branch.  Names may contain slashes,
+     *  as in R1/master for branches fetched from remote R1. */
+    boolean isBranch(String name) {
+        return refs.contains(name);
+    }
+
+    /** Return the name of an existing branch that prevents creating the
+     *  branch NAME (as "team" prevents "team/feature"), or null. */
+    String conflictingBranch(String name) {
+        return refs.conflict(name);
+    }
+
+    /** Return the names of all branches in sorted order. */
+    ArrayList<String> branchNames() {
+        return refs.names();
+    }
+
+    /** Return every branch and the uid of its head, in name order. */
+    TreeMap<String, String> branches() {
+        return refs.all();
+    }
+
+    /** Delete branch NAME and its reflog. */
+    void removeBranch(String name) {
+        refs.delete(name);
+        Reflog.delete(name);
+    }
+
+    /** Move every loose branch into the packed table, returning the
+     *  number of branches. */
+    int packBranches() {
+        return refs.pack();
     }
 
-    void updateBranch(File branch, Commit now) throws IOException {
-        Utils.writeContents(branch, now.getUid());
+    /** Point branch NAME at commit NOW because of REASON. */
+    void updateBranch(String name, Commit now, String reason) {
+        setBranch(name, now.getUid(), reason);
     }
 
+    /** Point branch NAME at the commit whose id is UID because of REASON,
+     *  recording the move in the reflogs of the branch and, if it is the
+     *  current branch, of HEAD. */
+    void setBranch(String name, String uid, String reason) {
+        try (Trace.Phase p = Trace.phase("repo.writeBranch")) {
+            String old = refs.get(name);
+            refs.set(name, uid);
+            Reflog.append(Reflog.branchLog(name), old, uid, reason);
+            if (hasCurrentBranch() && name.equals(getCurrentBranch())) {
+                Reflog.append(Reflog.headLog(), old, uid, reason);
+            }
+        }
+    }
+
+    /** Write COMMIT, record it in the commit graph, and clear the
+     *  staging area. */
     void updateCommit(Commit commit) {
-        File com = Utils.join(Main.COMMITS_FOLDER, sha1(commit.getUid()));
-        Utils.writeObject(com, commit);
+        try (Trace.Phase p = Trace.phase("repo.writeCommit")) {
+            File com = Utils.join(Main.COMMITS_FOLDER, hash(commit.getUid()));
+            Utils.writeObject(com, commit);
+        }
+        cache(commit);
+        commitGraph.add(commit, commit.getDad().equals("") ? null
+                        : readCommit(commit.getDad()));
         clearStagingArea();
     }
 
+    /** Return the commit graph. */
+    CommitGraph commitGraph() {
+        return commitGraph;
+    }
+
+    /** Return the paths staged in FOLDER, the addition or the removal
+     *  folder, in sorted order.  A path with directories is staged as a
+     *  file at that path under FOLDER. */
+    ArrayList<String> staged(File folder) {
+        ArrayList<String> result = new ArrayList<>();
+        collectStaged(folder, "", result);
+        Collections.sort(result);
+        return result;
+    }
+
+    /** Return true iff PATH is staged in FOLDER. */
+    boolean isStaged(File folder, String path) {
+        return Utils.join(folder, path).isFile();
+    }
+
+    /** Return true iff nothing is staged. */
+    boolean stagingAreaEmpty() {
+        return staged(addition).isEmpty() && staged(removal).isEmpty();
+    }
+
+    /** Stage CONTENTS to be added as PATH. */
+    void stageAddition(String path, byte[] contents) {
+        Utils.writeContents(stagedFile(addition, path), contents);
+    }
+
+    /** Stage PATH to be removed. */
+    void stageRemoval(String path) {
+        try {
+            stagedFile(removal, path).createNewFile();
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Return the file under FOLDER that stages PATH, creating the
+     *  directories leading to it. */
+    File stagedFile(File folder, String path) {
+        File file = Utils.join(folder, path);
+        try {
+            Files.createDirectories(file.getParentFile().toPath());
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return file;
+    }
+
+    /** Unstage PATH from FOLDER, removing directories left empty. */
+    void unstage(File folder, String path) {
+        File file = Utils.join(folder, path);
+        if (!file.delete()) {
+            return;
+        }
+        File dir = file.getParentFile();
+        for (int k = path.indexOf('/'); k >= 0 && dir.delete();
+             k = path.indexOf('/', k + 1)) {
+            dir = dir.getParentFile();
+        }
+    }
+
     void clearStagingArea() {
-        for (File staged : addition.listFiles()) {
-            staged.delete();
+        clearFolder(addition);
+        clearFolder(removal);
+    }
+
+    /** Add the paths staged under DIR, prefixed by PREFIX, to RESULT. */
+    private void collectStaged(File dir, String prefix,
+                               ArrayList<String> result) {
+        for (File file : dir.listFiles()) {
+            if (file.isDirectory()) {
+                collectStaged(file, prefix + file.getName() + "/", result);
+            } else {
+                result.add(prefix + file.getName());
+            }
         }
-        for (File staged : removal.listFiles()) {
-            staged.delete();
+    }
+
+    /** Delete everything in DIR. */
+    private void clearFolder(File dir) {
+        for (File file : dir.listFiles()) {
+            if (file.isDirectory()) {
+                clearFolder(file);
+            }
+            file.delete();
         }
     }
 }
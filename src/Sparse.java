@@ -0,0 +1,133 @@
+package gitlet;
+
+import java.io.File;
+import java.nio.file.FileSystems;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Map;
+
+/** Sparse checkout: glob patterns, one per line in .gitlet/sparse-checkout,
+ *  restricting which tracked paths checkout, reset, merge and status
+ *  materialize or look at.  A pattern that matches a directory includes
+ *  everything under it, so "docs" and "src/*" select subtrees.  Without
+ *  the file every path is included.  Paths outside the set stay in the
+ *  commits; they are just absent from the working directory.
+ */
+class Sparse {
+
+    /** File holding the sparse-checkout patterns. */
+    static final File SPARSE_FILE =
+        Utils.join(Main.GITLET_FOLDER, "sparse-checkout");
+
+    /** Run sparse-checkout with ARGS, which starts with
+     *  "sparse-checkout". */
+    static void run(String... args) {
+        if (args.length >= 3 && args[1].equals("set")) {
+            ArrayList<String> patterns = new ArrayList<>();
+            for (int i = 2; i < args.length; i += 1) {
+                patterns.add(args[i]);
+            }
+            update(patterns);
+        } else if (args.length == 2 && args[1].equals("list")) {
+            if (SPARSE_FILE.isFile()) {
+                System.out.print(Utils.readContentsAsString(SPARSE_FILE));
+            }
+        } else if (args.length == 2 && args[1].equals("disable")) {
+            update(null);
+        } else {
+            System.out.println("Incorrect operands.");
+            System.exit(0);
+        }
+    }
+
+    /** Return true iff PATH, relative to the working directory, is in the
+     *  sparse set. */
+    static boolean includes(String path) {
+        ArrayList<PathMatcher> matchers = matchers();
+        if (matchers == null) {
+            return true;
+        }
+        for (int end = path.indexOf('/'); ; end = path.indexOf('/', end + 1)) {
+            String prefix = end < 0 ? path : path.substring(0, end);
+            for (PathMatcher matcher : matchers) {
+                if (matcher.matches(Paths.get(prefix))) {
+                    return true;
+                }
+            }
+            if (end < 0) {
+                return false;
+            }
+        }
+    }
+
+    /** Return true iff a sparse set is in effect. */
+    static boolean enabled() {
+        return matchers() != null;
+    }
+
+    /** Replace the sparse patterns with PATTERNS (or remove them if null),
+     *  then bring the current commit's files in or out of the working
+     *  directory to match.  Files leaving the set are only deleted if they
+     *  are unmodified. */
+    private static void update(ArrayList<String> patterns) {
+        Commit current = Main.getCurrent();
+        HashSet<String> before = new HashSet<>();
+        for (String path : current.getBlobs().keySet()) {
+            if (includes(path)) {
+                before.add(path);
+            }
+        }
+        if (patterns == null) {
+            SPARSE_FILE.delete();
+        } else {
+            Utils.writeContents(SPARSE_FILE, String.join("\n", patterns)
+                                + "\n");
+        }
+        _matchers = null;
+        _loaded = false;
+        for (Map.Entry<String, String> entry
+                 : current.getBlobs().entrySet()) {
+            String path = entry.getKey();
+            File file = Utils.join(Main.CWD, path);
+            if (includes(path)) {
+                if (!file.isFile()) {
+                    Checkout.write(path, entry.getValue());
+                }
+            } else if (before.contains(path) && file.isFile()
+                       && Utils.hash(Utils.readContents(file))
+                              .equals(entry.getValue())) {
+                file.delete();
+            }
+        }
+    }
+
+    /** Return the compiled patterns, or null if there is no sparse set. */
+    private static ArrayList<PathMatcher> matchers() {
+        if (!_loaded) {
+            _loaded = true;
+            if (SPARSE_FILE.isFile()) {
+                _matchers = new ArrayList<>();
+                for (String line
+                         : Utils.readContentsAsString(SPARSE_FILE)
+                               .split("\n")) {
+                    String pattern = line.trim();
+                    while (pattern.endsWith("/")) {
+                        pattern = pattern.substring(0, pattern.length() - 1);
+                    }
+                    if (!pattern.isEmpty() && !pattern.startsWith("#")) {
+                        _matchers.add(FileSystems.getDefault()
+                                      .getPathMatcher("glob:" + pattern));
+                    }
+                }
+            }
+        }
+        return _matchers;
+    }
+
+    /** True once the patterns have been read. */
+    private static boolean _loaded;
+    /** Compiled patterns, or null if there is no sparse set. */
+    private static ArrayList<PathMatcher> _matchers;
+}
@@ -0,0 +1,174 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/** The forms of add and rm that stage many files at once:
+ *
+ *      add DIR     stage every change under the directory DIR ("." for
+ *                  the whole working directory)
+ *      add -A      stage every change in the working directory
+ *      add -u      stage changes to tracked and staged files only
+ *      rm -r DIR   remove every tracked file under DIR
+ *
+ *  A change is a file that is new or differs from the head commit's
+ *  version, which is staged for addition, or a tracked file that is gone,
+ *  which is staged for removal.  A file identical to the head commit's
+ *  version is unstaged, as add does for a single file.  New files are
+ *  found with WorkDir, so ignored files are passed over unless tracked,
+ *  and files outside the sparse set are not touched.
+ *
+ *  add first finds the content id of every file it considers, on the
+ *  Workers pool (or from the file system monitor's snapshot), and
+ *  compares it with the head commit's blob id, so that unchanged files
+ *  are never copied; then it makes all the staging updates together,
+ *  copying the changed files into the staging area on the pool.
+ */
+class Stage {
+
+    /** Return true iff ARGS, which starts with "add" or "rm", asks for one
+     *  of the forms handled here. */
+    static boolean recursive(String... args) {
+        if (args[0].equals("rm")) {
+            return args.length == 3 && args[1].equals("-r");
+        }
+        return args.length == 2
+            && (args[1].startsWith("-")
+                || Utils.join(Main.CWD, args[1]).isDirectory());
+    }
+
+    /** Run add with ARGS, which starts with "add". */
+    static void add(String... args) {
+        TreeMap<String, String> tracked = Main.getCurrent().getBlobs();
+        TreeSet<String> paths = new TreeSet<>();
+        String option = args[1];
+        if (option.equals("-u") || option.equals("--update")) {
+            paths.addAll(tracked.keySet());
+            paths.addAll(Main.REPO.staged(Main.ADDITION));
+        } else if (option.equals("-A") || option.equals("--all")) {
+            paths.addAll(WorkDir.files());
+            paths.addAll(tracked.keySet());
+            paths.addAll(Main.REPO.staged(Main.ADDITION));
+        } else if (!option.startsWith("-")) {
+            String dir = directory(option);
+            addUnder(paths, dir, WorkDir.files());
+            addUnder(paths, dir, tracked.keySet());
+            addUnder(paths, dir, Main.REPO.staged(Main.ADDITION));
+        } else {
+            System.out.println("Incorrect operands.");
+            System.exit(0);
+        }
+        paths.removeIf(path -> !Sparse.includes(path));
+        stage(paths, tracked);
+    }
+
+    /** Run rm -r on directory DIR. */
+    static void rm(String dir) {
+        TreeMap<String, String> tracked = Main.getCurrent().getBlobs();
+        TreeSet<String> paths = new TreeSet<>();
+        String prefix = directory(dir);
+        addUnder(paths, prefix, tracked.keySet());
+        addUnder(paths, prefix, Main.REPO.staged(Main.ADDITION));
+        if (paths.isEmpty()) {
+            System.out.println("No reason to remove the file.");
+            System.exit(0);
+        }
+        Workers.forEach(paths, path -> {
+            Main.REPO.unstage(Main.ADDITION, path);
+            if (tracked.containsKey(path)) {
+                delete(path);
+                Main.REPO.stageRemoval(path);
+            }
+        });
+    }
+
+    /** Stage the changes to PATHS from TRACKED, the head commit's files. */
+    private static void stage(TreeSet<String> paths,
+                              TreeMap<String, String> tracked) {
+        ConcurrentHashMap<String, String> ids = new ConcurrentHashMap<>();
+        try (Trace.Phase p = Trace.phase("add.hash")) {
+            Workers.forEach(paths, path -> {
+                String id = WorkDir.contentId(path);
+                if (id != null) {
+                    ids.put(path, id);
+                }
+            });
+        }
+        ArrayList<String> additions = new ArrayList<>();
+        for (String path : paths) {
+            String id = ids.get(path);
+            String was = tracked.get(path);
+            if (id == null) {
+                Main.REPO.unstage(Main.ADDITION, path);
+                if (was != null) {
+                    Main.REPO.stageRemoval(path);
+                }
+            } else if (id.equals(was)) {
+                Main.REPO.unstage(Main.ADDITION, path);
+                Main.REPO.unstage(Main.REMOVAL, path);
+            } else {
+                Main.REPO.unstage(Main.REMOVAL, path);
+                additions.add(path);
+            }
+        }
+        try (Trace.Phase p = Trace.phase("add.stage")) {
+            Workers.forEach(additions, Stage::copy);
+        }
+    }
+
+    /** Copy the file at PATH into the staging area for addition. */
+    private static void copy(String path) {
+        File dest = Main.REPO.stagedFile(Main.ADDITION, path);
+        try {
+            Files.copy(Utils.join(Main.CWD, path).toPath(), dest.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Delete the file at PATH from the working directory, and the
+     *  directories leading to it that are left empty. */
+    private static void delete(String path) {
+        File file = Utils.join(Main.CWD, path);
+        if (!file.delete()) {
+            return;
+        }
+        File dir = file.getParentFile();
+        for (int k = path.indexOf('/'); k >= 0 && dir.delete();
+             k = path.indexOf('/', k + 1)) {
+            dir = dir.getParentFile();
+        }
+    }
+
+    /** Add those of PATHS that lie under DIR ("" for all) to RESULT. */
+    private static void addUnder(TreeSet<String> result, String dir,
+                                 Iterable<String> paths) {
+        for (String path : paths) {
+            if (dir.isEmpty() || path.startsWith(dir + "/")) {
+                result.add(path);
+            }
+        }
+    }
+
+    /** Return the directory named by OPERAND as a path relative to the
+     *  working directory without a trailing '/', or "" for the working
+     *  directory itself. */
+    private static String directory(String operand) {
+        String dir = operand;
+        while (dir.startsWith("./")) {
+            dir = dir.substring(2);
+        }
+        while (dir.endsWith("/")) {
+            dir = dir.substring(0, dir.length() - 1);
+        }
+        return dir.equals(".") ? "" : dir;
+    }
+}
@@ -0,0 +1,296 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/** The stash command:
+ *
+ *      stash           put away the staged changes and the changes to
+ *                      tracked files, leaving the working directory as
+ *                      the head commit has it
+ *      stash -u        the same, putting away untracked files too
+ *      stash pop       bring back the newest stash and forget it
+ *      stash list      list the stashes, newest first, as stash@{N}
+ *
+ *  A stash is two commits that no branch points at: an index commit with
+ *  the head commit's files as the staging area would change them, and a
+ *  work commit with the files as the working directory has them, whose
+ *  parents are the head commit and the index commit.  Both only name
+ *  blobs: a staged file, or a working file about to be reset, is moved
+ *  into the blobs folder if its blob is not there already, so nothing is
+ *  copied.  The work commits are listed in .gitlet/stash, oldest first,
+ *  and gc keeps them.
+ *
+ *  pop merges the stash into the current head commit, which need not be
+ *  the one it was made on: a TreeWalk over the head commit the stash was
+ *  made on, the current one, the two stash commits and the working
+ *  directory makes a three-way merge of the work commit (and of the index
+ *  commit, for the staging area), and only the files whose result differs
+ *  from what the working directory has are written.  Such files must be
+ *  as the head commit has them; otherwise nothing is changed.  A file
+ *  changed differently on both sides gets the conflict-marked contents
+ *  merge gives it, and the stash is then kept.
+ */
+class Stash {
+
+    /** The list of stashes. */
+    static final File STASH_FILE = Utils.join(Main.COMMON_FOLDER, "stash");
+
+    /** Run stash with ARGS, which starts with "stash". */
+    static void run(String... args) {
+        if (args.length == 1) {
+            save(false);
+        } else if (args.length == 2 && args[1].equals("-u")) {
+            save(true);
+        } else if (args.length == 2 && args[1].equals("pop")) {
+            pop();
+        } else if (args.length == 2 && args[1].equals("list")) {
+            list();
+        } else {
+            System.out.println("Incorrect operands.");
+            System.exit(0);
+        }
+    }
+
+    /** Add the ids of the stashes' work commits to IDS. */
+    static void collectIds(Collection<String> ids) {
+        ids.addAll(entries());
+    }
+
+    /** Stash the staged changes and the changes to tracked files, and
+     *  untracked files too iff UNTRACKED. */
+    private static void save(boolean untracked) {
+        Commit head = Main.getCurrent();
+        TreeMap<String, String> tracked = head.getBlobs();
+        TreeWalk walk = new TreeWalk();
+        int h = walk.add(tracked);
+        int add = walk.add(TreeWalk.paths(Main.REPO.staged(Main.ADDITION)),
+                           Stash::stagedId);
+        int rm = walk.add(TreeWalk.paths(Main.REPO.staged(Main.REMOVAL)));
+        int work = walk.add(WorkDir.tree(), WorkDir::contentId);
+        TreeMap<String, String> index = new TreeMap<>();
+        TreeMap<String, String> files = new TreeMap<>();
+        ArrayList<String> moves = new ArrayList<>();
+        ArrayList<String> resets = new ArrayList<>();
+        while (walk.next()) {
+            String path = walk.path();
+            String staged = walk.has(add) ? walk.id(add)
+                : walk.has(rm) ? null : walk.id(h);
+            if (staged != null) {
+                index.put(path, staged);
+            }
+            String id;
+            if (!Sparse.includes(path)) {
+                id = staged;
+            } else if (walk.has(work)) {
+                if (staged == null && !untracked) {
+                    continue;
+                }
+                id = walk.id(work);
+            } else {
+                id = staged == null ? null : WorkDir.contentId(path);
+            }
+            if (id != null) {
+                files.put(path, id);
+            }
+            if (Sparse.includes(path) && !Objects.equals(id, walk.id(h))) {
+                resets.add(path);
+                if (id != null && !id.equals(staged) && !blob(id).isFile()) {
+                    moves.add(path);
+                }
+            }
+        }
+        if (index.equals(tracked) && files.equals(index)) {
+            System.out.println("No local changes to save.");
+            System.exit(0);
+        }
+
+        Workers.forEach(Main.REPO.staged(Main.ADDITION), path ->
+            move(Utils.join(Main.ADDITION, path), index.get(path)));
+        Workers.forEach(moves, path ->
+            move(Utils.join(Main.CWD, path), files.get(path)));
+        String on = " on " + Main.REPO.getCurrentBranch() + ": "
+            + head.getUid().substring(0, 7) + " " + head.getMsg();
+        Date now = new Date();
+        Commit indexCommit =
+            new Commit("index" + on, head.getUid(), "", now, index);
+        Commit workCommit = new Commit("WIP" + on, head.getUid(),
+                                       indexCommit.getUid(), now, files);
+        Main.REPO.updateCommit(indexCommit);
+        Main.REPO.updateCommit(workCommit);
+        Workers.forEach(resets, path -> {
+            if (tracked.containsKey(path)) {
+                Checkout.write(path, tracked.get(path));
+            } else {
+                Utils.join(Main.CWD, path).delete();
+            }
+        });
+        ArrayList<String> entries = entries();
+        entries.add(workCommit.getUid());
+        write(entries);
+    }
+
+    /** Bring back the newest stash, and forget it unless it conflicts. */
+    private static void pop() {
+        ArrayList<String> entries = entries();
+        if (entries.isEmpty()) {
+            System.out.println("No stash entries found.");
+            System.exit(0);
+        }
+        if (!Main.REPO.stagingAreaEmpty()) {
+            System.out.println("You have uncommitted changes.");
+            System.exit(0);
+        }
+        Commit workCommit =
+            Main.REPO.readCommit(entries.get(entries.size() - 1));
+        Commit base = Main.REPO.readCommit(workCommit.getDad());
+        Commit indexCommit = Main.REPO.readCommit(workCommit.getMom());
+        TreeWalk walk = new TreeWalk();
+        int b = walk.add(base.getBlobs());
+        int o = walk.add(Main.getCurrent().getBlobs());
+        int x = walk.add(indexCommit.getBlobs());
+        int s = walk.add(workCommit.getBlobs());
+        int work = walk.add(WorkDir.tree(), WorkDir::contentId);
+        TreeMap<String, String> writes = new TreeMap<>();
+        ArrayList<String> deletes = new ArrayList<>();
+        TreeMap<String, String> additions = new TreeMap<>();
+        ArrayList<String> removals = new ArrayList<>();
+        TreeSet<String> conflicts = new TreeSet<>();
+        while (walk.next()) {
+            String path = walk.path();
+            int side = walk.merged(b, o, s);
+            if (!Sparse.includes(path)) {
+                continue;
+            }
+            if (side >= 0 && walk.merged(b, o, x) == x
+                && !walk.same(o, x)) {
+                if (walk.has(x)) {
+                    additions.put(path, walk.id(x));
+                } else {
+                    removals.add(path);
+                }
+            }
+            if (side == o) {
+                continue;
+            }
+            String id;
+            if (side >= 0) {
+                id = walk.id(side);
+            } else {
+                id = Replay.conflict(walk.id(o), walk.id(s));
+                conflicts.add(path);
+            }
+            String current = walk.has(work) ? walk.id(work)
+                : walk.has(o) ? WorkDir.contentId(path) : null;
+            if (Objects.equals(current, id)) {
+                continue;
+            } else if (!walk.has(o) && current != null) {
+                Main.untracked();
+            } else if (walk.has(o) && !walk.id(o).equals(current)) {
+                System.out.println("You have uncommitted changes.");
+                System.exit(0);
+            }
+            if (id == null) {
+                deletes.add(path);
+            } else {
+                writes.put(path, id);
+            }
+        }
+        Workers.forEach(writes.keySet(), path ->
+            Checkout.write(path, writes.get(path)));
+        for (String path : deletes) {
+            Utils.join(Main.CWD, path).delete();
+        }
+        Workers.forEach(additions.keySet(), path ->
+            copy(additions.get(path),
+                 Main.REPO.stagedFile(Main.ADDITION, path)));
+        for (String path : removals) {
+            Main.REPO.stageRemoval(path);
+        }
+        if (!conflicts.isEmpty()) {
+            System.out.println("Encountered a merge conflict.");
+            return;
+        }
+        entries.remove(entries.size() - 1);
+        write(entries);
+    }
+
+    /** Print the stashes, newest first. */
+    private static void list() {
+        ArrayList<String> entries = entries();
+        StringBuilder out = new StringBuilder();
+        for (int i = entries.size() - 1, n = 0; i >= 0; i -= 1, n += 1) {
+            out.append("stash@{").append(n).append("}: ")
+                .append(Main.REPO.readCommit(entries.get(i)).getMsg())
+                .append('\n');
+        }
+        System.out.print(out);
+    }
+
+    /** Return the ids of the stashes' work commits, oldest first. */
+    private static ArrayList<String> entries() {
+        ArrayList<String> result = new ArrayList<>();
+        if (STASH_FILE.isFile()) {
+            for (String line
+                     : Utils.readContentsAsString(STASH_FILE).split("\n")) {
+                if (!line.isEmpty()) {
+                    result.add(line);
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Record ENTRIES as the stashes' work commits, oldest first. */
+    private static void write(ArrayList<String> entries) {
+        if (entries.isEmpty()) {
+            STASH_FILE.delete();
+            return;
+        }
+        Utils.writeContents(STASH_FILE, String.join("\n", entries) + "\n");
+    }
+
+    /** Return the id of the blob staged for addition as PATH. */
+    private static String stagedId(String path) {
+        return Utils.hash(Utils.readContents(
+            Utils.join(Main.ADDITION, path)));
+    }
+
+    /** Move FILE into the blobs folder as blob ID, unless it is there
+     *  already. */
+    private static void move(File file, String id) {
+        File dest = blob(id);
+        if (dest.isFile()) {
+            return;
+        }
+        try {
+            Files.move(file.toPath(), dest.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Copy blob ID to DEST. */
+    private static void copy(String id, File dest) {
+        try {
+            Files.copy(blob(id).toPath(), dest.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Return blob ID's file. */
+    private static File blob(String id) {
+        return Utils.join(Main.BLOBS_FOLDER, id);
+    }
+}
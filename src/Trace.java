@@ -0,0 +1,226 @@
+package gitlet;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/** Operation tracing.  When the environment variable GITLET_TRACE is set,
+ *  commands record how long they spend in each phase (file reads and
+ *  writes, deserialization, hashing, repository updates), how many files
+ *  and bytes they read and write, and how often caches hit.  The summary
+ *  is printed when the program exits: as a table on standard error if
+ *  GITLET_TRACE is 1 (or "true"), or otherwise as one JSON object
+ *  appended to the file GITLET_TRACE names.
+ *
+ *  When GITLET_TRACE is unset every method returns at once, so the hooks
+ *  cost no more than a test of a constant.
+ */
+class Trace {
+
+    /** Value of GITLET_TRACE, or null. */
+    private static final String SETTING = System.getenv("GITLET_TRACE");
+
+    /** True iff tracing is on. */
+    static final boolean ENABLED =
+        SETTING != null && !SETTING.isEmpty() && !SETTING.equals("0");
+
+    /** A timed phase, closed when it ends. */
+    interface Phase extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    /** The phase returned when tracing is off. */
+    private static final Phase NONE = () -> { };
+
+    static {
+        if (ENABLED) {
+            Runtime.getRuntime().addShutdownHook(new Thread(Trace::report));
+        }
+    }
+
+    /** Record that the command NAME has started. */
+    static void command(String name) {
+        if (ENABLED) {
+            _command = name;
+            _start = System.nanoTime();
+        }
+    }
+
+    /** Start timing the phase NAME.  Use as
+     *      try (Trace.Phase p = Trace.phase("...")) { ... }
+     *  Nested phases are each timed in full. */
+    static Phase phase(String name) {
+        if (!ENABLED) {
+            return NONE;
+        }
+        long start = System.nanoTime();
+        return () -> {
+            add("time." + name, System.nanoTime() - start);
+            add("calls." + name, 1);
+        };
+    }
+
+    /** Record that a file of BYTES bytes was read. */
+    static void read(long bytes) {
+        if (ENABLED) {
+            add("files.read", 1);
+            add("bytes.read", bytes);
+        }
+    }
+
+    /** Record that a file of BYTES bytes was written. */
+    static void wrote(long bytes) {
+        if (ENABLED) {
+            add("files.written", 1);
+            add("bytes.written", bytes);
+        }
+    }
+
+    /** Record that BYTES bytes were hashed. */
+    static void hashed(long bytes) {
+        if (ENABLED) {
+            add("bytes.hashed", bytes);
+        }
+    }
+
+    /** Record a lookup in CACHE that hit iff HIT. */
+    static void cache(String cache, boolean hit) {
+        if (ENABLED) {
+            add((hit ? "hits." : "misses.") + cache, 1);
+        }
+    }
+
+    /** Add AMOUNT to the counter NAME. */
+    private static void add(String name, long amount) {
+        COUNTERS.computeIfAbsent(name, k -> new LongAdder()).add(amount);
+    }
+
+    /** Return the counters whose names start with PREFIX, with the prefix
+     *  removed, in name order. */
+    private static TreeMap<String, Long> group(String prefix) {
+        TreeMap<String, Long> result = new TreeMap<>();
+        for (Map.Entry<String, LongAdder> e : COUNTERS.entrySet()) {
+            if (e.getKey().startsWith(prefix)) {
+                result.put(e.getKey().substring(prefix.length()),
+                           e.getValue().sum());
+            }
+        }
+        return result;
+    }
+
+    /** Print or append the summary. */
+    private static void report() {
+        double total = (System.nanoTime() - _start) / 1e6;
+        TreeMap<String, Long> times = group("time.");
+        TreeMap<String, Long> calls = group("calls.");
+        TreeMap<String, Long> hits = group("hits.");
+        TreeMap<String, Long> misses = group("misses.");
+        TreeMap<String, Long> counts = new TreeMap<>();
+        for (String kind : new String[] {"files.", "bytes."}) {
+            for (Map.Entry<String, Long> e : group(kind).entrySet()) {
+                counts.put(kind + e.getKey(), e.getValue());
+            }
+        }
+        TreeMap<String, Long> caches = new TreeMap<>(hits);
+        for (String name : misses.keySet()) {
+            caches.putIfAbsent(name, 0L);
+        }
+
+        if (SETTING.equals("1") || SETTING.equalsIgnoreCase("true")) {
+            PrintWriter out = new PrintWriter(System.err);
+            out.printf(Locale.ROOT, "trace: %s  %.2f ms%n", _command, total);
+            out.printf("  %-24s %8s %12s%n", "phase", "calls", "ms");
+            for (String name : times.keySet()) {
+                out.printf(Locale.ROOT, "  %-24s %8d %12.2f%n", name,
+                           calls.get(name), times.get(name) / 1e6);
+            }
+            for (Map.Entry<String, Long> e : counts.entrySet()) {
+                out.printf("  %-24s %21d%n", e.getKey(), e.getValue());
+            }
+            for (String name : caches.keySet()) {
+                long h = hits.getOrDefault(name, 0L);
+                long m = misses.getOrDefault(name, 0L);
+                out.printf(Locale.ROOT,
+                           "  cache %-18s %6d hits %6d misses %5.1f%%%n",
+                           name, h, m, 100.0 * h / Math.max(1, h + m));
+            }
+            out.flush();
+            return;
+        }
+
+        StringBuilder json = new StringBuilder();
+        json.append(String.format(Locale.ROOT,
+                                  "{\"command\":%s,\"total_ms\":%.3f,",
+                                  quote(_command), total));
+        json.append("\"phases\":{");
+        String sep = "";
+        for (String name : times.keySet()) {
+            json.append(String.format(Locale.ROOT,
+                                      "%s%s:{\"calls\":%d,\"ms\":%.3f}",
+                                      sep, quote(name), calls.get(name),
+                                      times.get(name) / 1e6));
+            sep = ",";
+        }
+        json.append("},\"counters\":{");
+        sep = "";
+        for (Map.Entry<String, Long> e : counts.entrySet()) {
+            json.append(sep).append(quote(e.getKey())).append(':')
+                .append(e.getValue());
+            sep = ",";
+        }
+        json.append("},\"caches\":{");
+        sep = "";
+        for (String name : caches.keySet()) {
+            long h = hits.getOrDefault(name, 0L);
+            long m = misses.getOrDefault(name, 0L);
+            json.append(String.format(Locale.ROOT,
+                                      "%s%s:{\"hits\":%d,\"misses\":%d,"
+                                      + "\"hit_rate\":%.4f}", sep, quote(name),
+                                      h, m,
+                                      (double) h / Math.max(1, h + m)));
+            sep = ",";
+        }
+        json.append("}}\n");
+        try (FileWriter out = new FileWriter(SETTING, true)) {
+            out.write(json.toString());
+        } catch (IOException excp) {
+            System.err.println("Could not write trace: " + excp.getMessage());
+        }
+    }
+
+    /** Return TEXT as a JSON string literal. */
+    private static String quote(String text) {
+        StringBuilder result = new StringBuilder("\"");
+        for (int i = 0; i < text.length(); i += 1) {
+            char c = text.charAt(i);
+            if (c == '"' || c == '\\') {
+                result.append('\\').append(c);
+            } else if (c == '\n') {
+                result.append("\\n");
+            } else if (c == '\r') {
+                result.append("\\r");
+            } else if (c == '\t') {
+                result.append("\\t");
+            } else if (c < ' ') {
+                result.append(String.format("\\u%04x", (int) c));
+            } else {
+                result.append(c);
+            }
+        }
+        return result.append('"').toString();
+    }
+
+    /** All counters, by name. */
+    private static final ConcurrentHashMap<String, LongAdder> COUNTERS =
+        new ConcurrentHashMap<>();
+    /** Name of the command being traced. */
+    private static String _command = "";
+    /** Time the command started, from System.nanoTime. */
+    private static long _start = System.nanoTime();
+}
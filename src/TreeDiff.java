@@ -0,0 +1,112 @@
+package gitlet;
+
+import java.io.File;
+import java.util.Objects;
+
+/** The diff command:
+ *
+ *      diff                    the head commit against the working directory
+ *      diff BRANCH             branch BRANCH against the working directory
+ *      diff BRANCH1 BRANCH2    branch BRANCH1 against branch BRANCH2
+ *
+ *  prints, for each file whose contents differ, the lines to remove from
+ *  the first version and add to make the second, in the unified format:
+ *
+ *      diff --git a/FILE b/FILE
+ *      --- a/FILE
+ *      +++ b/FILE
+ *      @@ -START1,COUNT1 +START2,COUNT2 @@
+ *      -removed line
+ *      +added line
+ *
+ *  with /dev/null for a missing version.  Against the working directory
+ *  only the files the branch tracks are compared, and files outside the
+ *  sparse set are passed over.  The trees are compared with a TreeWalk,
+ *  and only files whose ids differ are read.
+ */
+class TreeDiff {
+
+    /** Run diff with ARGS, which starts with "diff". */
+    static void run(String... args) {
+        if (args.length > 3) {
+            System.out.println("Incorrect operands.");
+            System.exit(0);
+        }
+        for (int i = 1; i < args.length; i += 1) {
+            if (!Main.REPO.isBranch(args[i])) {
+                System.out.println("At least one branch does not exist.");
+                System.exit(0);
+            }
+        }
+        String first = args.length > 1 ? args[1]
+            : Main.REPO.getCurrentBranch();
+        boolean working = args.length < 3;
+        TreeWalk walk = new TreeWalk();
+        int one = walk.add(Main.REPO.getHeadOfBranch(first).getBlobs());
+        int two = working ? walk.add(WorkDir.tree(), WorkDir::contentId)
+            : walk.add(Main.REPO.getHeadOfBranch(args[2]).getBlobs());
+        StringBuilder out = new StringBuilder();
+        while (walk.next()) {
+            String path = walk.path();
+            if (working && (!walk.has(one) || !Sparse.includes(path))) {
+                continue;
+            }
+            String id2 = walk.id(two);
+            File file2 = blob(id2);
+            if (working) {
+                file2 = Utils.join(Main.CWD, path);
+                if (!walk.has(two)) {
+                    id2 = WorkDir.contentId(path);
+                    file2 = id2 == null ? null : file2;
+                }
+            }
+            if (!Objects.equals(walk.id(one), id2)) {
+                print(out, path, blob(walk.id(one)), file2);
+            }
+        }
+        System.out.print(out);
+    }
+
+    /** Return blob ID's file, or null if ID is null. */
+    private static File blob(String id) {
+        return id == null ? null : Utils.join(Main.BLOBS_FOLDER, id);
+    }
+
+    /** Add to OUT the differences between FILE1 and FILE2, the two
+     *  versions of PATH, either of which may be null. */
+    private static void print(StringBuilder out, String path,
+                              File file1, File file2) {
+        String name1 = file1 == null ? "/dev/null" : "a/" + path;
+        String name2 = file2 == null ? "/dev/null" : "b/" + path;
+        out.append("diff --git ").append(name1).append(' ').append(name2)
+            .append('\n');
+        out.append("--- ").append(name1).append('\n');
+        out.append("+++ ").append(name2).append('\n');
+        Diff diff = new Diff();
+        diff.setSequences(file1, file2);
+        int[] edits = diff.diffs();
+        for (int k = 0; k < edits.length; k += 4) {
+            out.append("@@ -").append(range(edits[k], edits[k + 1]))
+                .append(" +").append(range(edits[k + 2], edits[k + 3]))
+                .append(" @@\n");
+            for (int i = 0; i < edits[k + 1]; i += 1) {
+                out.append('-').append(diff.get1(edits[k] + i)).append('\n');
+            }
+            for (int i = 0; i < edits[k + 3]; i += 1) {
+                out.append('+').append(diff.get2(edits[k + 2] + i))
+                    .append('\n');
+            }
+        }
+    }
+
+    /** Return the hunk header range for the COUNT lines from line START
+     *  (numbered from 0). */
+    private static String range(int start, int count) {
+        if (count == 0) {
+            return start + ",0";
+        } else if (count == 1) {
+            return Integer.toString(start + 1);
+        }
+        return (start + 1) + "," + count;
+    }
+}
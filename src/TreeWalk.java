@@ -0,0 +1,159 @@
+package gitlet;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+/** A walk over several trees at once, each a sorted map from path to
+ *  blob id, such as a commit's files, the staging area or the working
+ *  directory.  The walk visits, in path order, every path that any of
+ *  the trees has, and tells for each tree whether it has the path and
+ *  with what id:
+ *
+ *      TreeWalk walk = new TreeWalk();
+ *      int base = walk.add(split.getBlobs());
+ *      int work = walk.add(WorkDir.tree(), WorkDir::contentId);
+ *      while (walk.next()) {
+ *          ... walk.path(), walk.has(base), walk.id(work) ...
+ *      }
+ *
+ *  It is a merge-join: each tree is read once, in order, alongside the
+ *  others, so comparing trees of N paths costs O(N) steps in all rather
+ *  than a lookup per path in every other tree.  A tree may leave ids out
+ *  (map them to null), as WorkDir.tree() does when there is no file
+ *  system monitor; id() then asks the tree's resolver, once per path and
+ *  only for the paths whose id is wanted.  Merge, status, checkout and
+ *  diff all compare trees this way.
+ */
+class TreeWalk {
+
+    /** Add TREE, whose ids are all given, to the walk and return its
+     *  index. */
+    int add(SortedMap<String, String> tree) {
+        return add(tree, null);
+    }
+
+    /** Add TREE to the walk and return its index.  RESOLVER gives the id
+     *  of any path TREE maps to null. */
+    int add(SortedMap<String, String> tree,
+            Function<String, String> resolver) {
+        _trees.add(tree.entrySet().iterator());
+        _resolvers.add(resolver);
+        _heads.add(null);
+        _ids.add(null);
+        _has.add(false);
+        return _trees.size() - 1;
+    }
+
+    /** Return a tree with PATHS, whose ids are left to a resolver. */
+    static SortedMap<String, String> paths(Collection<String> paths) {
+        TreeMap<String, String> result = new TreeMap<>();
+        for (String path : paths) {
+            result.put(path, null);
+        }
+        return result;
+    }
+
+    /** Move to the next path any tree has, returning false if there is
+     *  none. */
+    boolean next() {
+        if (!_started) {
+            _started = true;
+            for (int i = 0; i < _trees.size(); i += 1) {
+                advance(i);
+            }
+        } else {
+            for (int i = 0; i < _trees.size(); i += 1) {
+                if (_has.get(i)) {
+                    advance(i);
+                }
+            }
+        }
+        _path = null;
+        for (Map.Entry<String, String> head : _heads) {
+            if (head != null
+                && (_path == null || head.getKey().compareTo(_path) < 0)) {
+                _path = head.getKey();
+            }
+        }
+        for (int i = 0; i < _trees.size(); i += 1) {
+            Map.Entry<String, String> head = _heads.get(i);
+            boolean has = head != null && head.getKey().equals(_path);
+            _has.set(i, has);
+            _ids.set(i, has ? head.getValue() : null);
+        }
+        return _path != null;
+    }
+
+    /** Return the current path. */
+    String path() {
+        return _path;
+    }
+
+    /** Return true iff tree I has the current path. */
+    boolean has(int i) {
+        return _has.get(i);
+    }
+
+    /** Return the id tree I has for the current path, or null if it does
+     *  not have the path. */
+    String id(int i) {
+        String id = _ids.get(i);
+        if (id == null && _has.get(i) && _resolvers.get(i) != null) {
+            id = _resolvers.get(i).apply(_path);
+            _ids.set(i, id);
+        }
+        return id;
+    }
+
+    /** Return true iff trees I and J both lack the current path or both
+     *  have it with the same id. */
+    boolean same(int i, int j) {
+        if (has(i) != has(j)) {
+            return false;
+        }
+        return !has(i) || Objects.equals(id(i), id(j));
+    }
+
+    /** Return whichever of trees OURS and THEIRS has the version of the
+     *  current path that a three-way merge takes, given that tree BASE
+     *  has their common ancestor's version, or -1 if they changed it
+     *  differently. */
+    int merged(int base, int ours, int theirs) {
+        if (same(base, theirs) || same(ours, theirs)) {
+            return ours;
+        } else if (same(base, ours)) {
+            return theirs;
+        }
+        return -1;
+    }
+
+    /** Move tree I on to its next entry. */
+    private void advance(int i) {
+        Iterator<Map.Entry<String, String>> tree = _trees.get(i);
+        _heads.set(i, tree.hasNext() ? tree.next() : null);
+    }
+
+    /** The entries of each tree not yet reached. */
+    private final ArrayList<Iterator<Map.Entry<String, String>>> _trees =
+        new ArrayList<>();
+    /** How to find each tree's missing ids. */
+    private final ArrayList<Function<String, String>> _resolvers =
+        new ArrayList<>();
+    /** The next entry of each tree, or null once it is done. */
+    private final ArrayList<Map.Entry<String, String>> _heads =
+        new ArrayList<>();
+    /** The id each tree has for the current path, if known. */
+    private final ArrayList<String> _ids = new ArrayList<>();
+    /** Whether each tree has the current path. */
+    private final ArrayList<Boolean> _has = new ArrayList<>();
+    /** True once next has been called. */
+    private boolean _started;
+    /** The current path, or null. */
+    private String _path;
+}
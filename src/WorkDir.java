@@ -0,0 +1,106 @@
+package gitlet;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/** The working-tree scanner: lists the files of the working directory,
+ *  including those in subdirectories, for status and for the
+ *  untracked-file checks.  Files that Ignore rules out are left out, and
+ *  directories it rules out are not read at all, nor are directories
+ *  holding a .gitlet of their own, such as a worktree added inside this
+ *  one.  When the file system monitor is running, the listing and the
+ *  ids of the files' contents come from its snapshot, which re-examines
+ *  only the paths changed since it was last taken. */
+class WorkDir {
+
+    /** Return the path of every plain file under the working directory,
+     *  relative to it and with '/' separators, in sorted order.  The .gitlet
+     *  directory and ignored files are skipped. */
+    static ArrayList<String> files() {
+        TreeMap<String, String> snapshot = FsMonitor.snapshot();
+        if (snapshot != null) {
+            return new ArrayList<>(snapshot.keySet());
+        }
+        return scan();
+    }
+
+    /** Return the files of files() as a tree for TreeWalk, mapped to the
+     *  ids of their contents if those are already known and to null if
+     *  not, in which case WorkDir::contentId finds them. */
+    static SortedMap<String, String> tree() {
+        TreeMap<String, String> snapshot = FsMonitor.snapshot();
+        if (snapshot != null) {
+            return snapshot;
+        }
+        return TreeWalk.paths(scan());
+    }
+
+    /** Return the id the contents of the file at PATH would have as a
+     *  blob, or null if there is no such file.  PATH may be ignored. */
+    static String contentId(String path) {
+        TreeMap<String, String> snapshot = FsMonitor.snapshot();
+        if (snapshot != null && snapshot.containsKey(path)) {
+            return snapshot.get(path);
+        } else if (snapshot != null && !Ignore.excludes(path, false)) {
+            return null;
+        }
+        File file = Utils.join(Main.CWD, path);
+        return file.isFile() ? Utils.hash(Utils.readContents(file)) : null;
+    }
+
+    /** Return true iff PATH is, or lies under, a directory holding a
+     *  .gitlet of its own: another working directory (such as a linked
+     *  worktree) nested in this one, which the scanner leaves out. */
+    static boolean nested(String path) {
+        for (int k = path.indexOf('/'); k > 0; k = path.indexOf('/', k + 1)) {
+            if (Utils.join(Main.CWD, path.substring(0, k), ".gitlet")
+                .exists()) {
+                return true;
+            }
+        }
+        return Utils.join(Main.CWD, path, ".gitlet").exists();
+    }
+
+    /** Return the files under the working directory as files() does, by
+     *  reading every directory. */
+    static ArrayList<String> scan() {
+        ArrayList<String> result = new ArrayList<>();
+        collect(Main.CWD, "", result);
+        Collections.sort(result);
+        return result;
+    }
+
+    /** Return the files under the directory DIR of the working directory,
+     *  as scan() names them. */
+    static ArrayList<String> scan(String dir) {
+        ArrayList<String> result = new ArrayList<>();
+        collect(Utils.join(Main.CWD, dir), dir + "/", result);
+        Collections.sort(result);
+        return result;
+    }
+
+    /** Add the files under DIR, prefixed by PREFIX, to RESULT. */
+    private static void collect(File dir, String prefix,
+                                ArrayList<String> result) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            String path = prefix + file.getName();
+            if (path.equals(".gitlet")) {
+                continue;
+            } else if (file.isDirectory()) {
+                if (!Ignore.ignored(path, true)
+                    && !Utils.join(file, ".gitlet").exists()) {
+                    collect(file, path + "/", result);
+                }
+            } else if (file.isFile() && !Ignore.ignored(path, false)) {
+                result.add(path);
+            }
+        }
+    }
+}
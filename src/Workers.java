@@ -0,0 +1,65 @@
+package gitlet;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/** A bounded pool of threads for spreading file I/O across cores. */
+class Workers {
+
+    /** Largest number of threads used by one call. */
+    static final int THREADS =
+        Math.max(1, Math.min(8, Runtime.getRuntime().availableProcessors()));
+
+    /** Apply TASK to each of ITEMS on at most THREADS threads, returning
+     *  once all are done.  The first exception thrown by TASK is rethrown
+     *  after the others have finished. */
+    static <T> void forEach(Collection<T> items, Consumer<? super T> task) {
+        if (items.size() < 2 || THREADS == 1) {
+            for (T item : items) {
+                task.accept(item);
+            }
+            return;
+        }
+        ExecutorService pool =
+            Executors.newFixedThreadPool(Math.min(THREADS, items.size()));
+        try {
+            ArrayList<Future<?>> pending = new ArrayList<>();
+            for (T item : items) {
+                pending.add(pool.submit(() -> task.accept(item)));
+            }
+            RuntimeException failure = null;
+            for (Future<?> future : pending) {
+                try {
+                    future.get();
+                } catch (ExecutionException excp) {
+                    if (failure == null) {
+                        failure = asRuntime(excp.getCause());
+                    }
+                } catch (InterruptedException excp) {
+                    Thread.currentThread().interrupt();
+                    throw Utils.error("Interrupted.");
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /** Return CAUSE as an unchecked exception. */
+    private static RuntimeException asRuntime(Throwable cause) {
+        if (cause instanceof RuntimeException) {
+            return (RuntimeException) cause;
+        } else if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return new IllegalArgumentException(cause.getMessage());
+    }
+}
@@ -0,0 +1,241 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.TreeMap;
+
+/** The worktree command, for more working directories on one repository:
+ *
+ *      worktree add DIR BRANCH   make DIR a working directory with BRANCH
+ *                                checked out
+ *      worktree list             list the working directories, the main
+ *                                one first, with their head commits and
+ *                                branches
+ *      worktree prune            forget worktrees whose directory is gone
+ *
+ *  The working directories share the commits, blobs, branches, config,
+ *  branch reflogs, commit graph and stashes, kept in the main working
+ *  directory's .gitlet (Main.COMMON_FOLDER), so adding one copies no
+ *  objects.  Each has its own HEAD, staging area, HEAD reflog, file
+ *  system monitor snapshot and sparse set (Main.GITLET_FOLDER): for the
+ *  main one that is .gitlet itself, and for the others the folder
+ *  .gitlet/worktrees/NAME, which their .gitlet, a file, names:
+ *
+ *      gitdir: /path/to/main/.gitlet/worktrees/NAME
+ *
+ *  That folder's commondir file names the shared folder, and its gitdir
+ *  file the worktree's .gitlet, so that list and the checks below can
+ *  find the worktree.  A branch may be checked out in only one working
+ *  directory at a time, so checkout and rm-branch refuse a branch that
+ *  another has; a worktree whose directory has been deleted no longer
+ *  counts, and prune removes its folder.
+ */
+class Worktree {
+
+    /** What a linked worktree's .gitlet file starts with. */
+    static final String GITDIR = "gitdir: ";
+
+    /** Return the folder holding the state of the working directory DIR
+     *  alone: DIR/.gitlet, unless that is a file naming it. */
+    static File gitletFolder(File dir) {
+        File dotGitlet = Utils.join(dir, ".gitlet");
+        if (dotGitlet.isFile()) {
+            String line = Utils.readContentsAsString(dotGitlet).trim();
+            if (line.startsWith(GITDIR)) {
+                return new File(line.substring(GITDIR.length()));
+            }
+        }
+        return dotGitlet;
+    }
+
+    /** Return the folder that the working directory whose own folder is
+     *  DIR shares with the others: DIR, unless its commondir file names
+     *  another. */
+    static File commonFolder(File dir) {
+        File common = Utils.join(dir, "commondir");
+        if (common.isFile()) {
+            return new File(Utils.readContentsAsString(common).trim());
+        }
+        return dir;
+    }
+
+    /** Run worktree with ARGS, which starts with "worktree". */
+    static void run(String... args) {
+        if (args.length == 4 && args[1].equals("add")) {
+            add(args[2], args[3]);
+        } else if (args.length == 2 && args[1].equals("list")) {
+            list();
+        } else if (args.length == 2 && args[1].equals("prune")) {
+            prune();
+        } else {
+            System.out.println("Incorrect operands.");
+            System.exit(0);
+        }
+    }
+
+    /** Exit if some other working directory has BRANCH checked out. */
+    static void notCheckedOutElsewhere(String branch) {
+        if (checkedOut(branch, false)) {
+            System.out.println("That branch is checked out in another "
+                               + "worktree.");
+            System.exit(0);
+        }
+    }
+
+    /** Make DIR a working directory with BRANCH checked out. */
+    private static void add(String dir, String branch) {
+        if (!Main.REPO.isBranch(branch)) {
+            System.out.println("A branch with that name does not exist.");
+            System.exit(0);
+        }
+        if (checkedOut(branch, true)) {
+            System.out.println("That branch is already checked out.");
+            System.exit(0);
+        }
+        File top = absolute(new File(dir));
+        String[] present = top.list();
+        if (top.exists() && (present == null || present.length > 0)) {
+            System.out.println("That directory already exists.");
+            System.exit(0);
+        }
+        File folders = Utils.join(absolute(Main.COMMON_FOLDER), "worktrees");
+        String name = top.getName();
+        File folder = Utils.join(folders, name);
+        for (int i = 1; folder.exists(); i += 1) {
+            folder = Utils.join(folders, name + i);
+        }
+        Utils.join(folder, "staging_area", "addition").mkdirs();
+        Utils.join(folder, "staging_area", "removal").mkdirs();
+        Utils.writeContents(Utils.join(folder, "HEAD"), branch);
+        Utils.writeContents(Utils.join(folder, "commondir"),
+                            absolute(Main.COMMON_FOLDER).getPath() + "\n");
+        Utils.writeContents(Utils.join(folder, "gitdir"),
+                            Utils.join(top, ".gitlet").getPath() + "\n");
+        top.mkdirs();
+        Utils.writeContents(Utils.join(top, ".gitlet"),
+                            GITDIR + folder.getPath() + "\n");
+
+        Commit head = Main.REPO.getHeadOfBranch(branch);
+        TreeMap<String, String> blobs = head.getBlobs();
+        Workers.forEach(blobs.keySet(), path ->
+            copy(blobs.get(path), Utils.join(top, path)));
+        Reflog.append(Utils.join(folder, "logs", "HEAD"), null,
+                      head.getUid(), "worktree add");
+    }
+
+    /** Print each working directory with its head commit and branch. */
+    private static void list() {
+        StringBuilder out = new StringBuilder();
+        for (File folder : folders().values()) {
+            String branch = head(folder);
+            if (branch == null) {
+                continue;
+            }
+            String uid = Main.REPO.getBranchId(branch);
+            out.append(top(folder).getPath()).append(' ')
+                .append(uid, 0, 7).append(" [").append(branch)
+                .append("]\n");
+        }
+        System.out.print(out);
+    }
+
+    /** Remove the folders of worktrees whose directory is gone. */
+    private static void prune() {
+        File[] linked =
+            Utils.join(Main.COMMON_FOLDER, "worktrees").listFiles();
+        if (linked == null) {
+            return;
+        }
+        for (File folder : linked) {
+            if (!live(folder)) {
+                delete(folder);
+            }
+        }
+    }
+
+    /** Return true iff some working directory, this one too iff HERE, has
+     *  BRANCH checked out. */
+    private static boolean checkedOut(String branch, boolean here) {
+        File self = absolute(Main.GITLET_FOLDER);
+        for (File folder : folders().values()) {
+            if ((here || !folder.equals(self))
+                && branch.equals(head(folder))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Return the own folder of every working directory whose directory
+     *  is still there, by name, the main one under "". */
+    private static TreeMap<String, File> folders() {
+        TreeMap<String, File> result = new TreeMap<>();
+        File common = absolute(Main.COMMON_FOLDER);
+        result.put("", common);
+        File[] linked = Utils.join(common, "worktrees").listFiles();
+        if (linked != null) {
+            for (File folder : linked) {
+                if (live(folder)) {
+                    result.put(folder.getName(), folder);
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Return true iff the linked worktree whose own folder is FOLDER
+     *  still has its directory. */
+    private static boolean live(File folder) {
+        return Utils.join(top(folder), ".gitlet").isFile();
+    }
+
+    /** Return the directory of the working directory whose own folder is
+     *  FOLDER. */
+    private static File top(File folder) {
+        File gitdir = Utils.join(folder, "gitdir");
+        if (!gitdir.isFile()) {
+            return folder.getParentFile();
+        }
+        return new File(Utils.readContentsAsString(gitdir).trim())
+            .getParentFile();
+    }
+
+    /** Return the branch checked out in the working directory whose own
+     *  folder is FOLDER, or null if it has none. */
+    private static String head(File folder) {
+        File head = Utils.join(folder, "HEAD");
+        if (!head.isFile()) {
+            head = Utils.join(folder, "branches", Refs.LEGACY_HEAD);
+        }
+        return head.isFile() ? Utils.readContentsAsString(head) : null;
+    }
+
+    /** Copy blob ID to DEST, creating its directory if needed. */
+    private static void copy(String id, File dest) {
+        dest.getParentFile().mkdirs();
+        try {
+            Files.copy(Utils.join(Main.BLOBS_FOLDER, id).toPath(),
+                       dest.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Delete FILE, and everything under it if it is a directory. */
+    private static void delete(File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File each : files) {
+                delete(each);
+            }
+        }
+        file.delete();
+    }
+
+    /** Return FILE as an absolute path without "." or "..". */
+    private static File absolute(File file) {
+        return file.toPath().toAbsolutePath().normalize().toFile();
+    }
+}
@@ -43,6 +43,9 @@ The instructions each have one of the following forms:
           intended to let you set up remote repositories.
    T N    Set the timeout for gitlet commands in the rest of this test to N
           seconds.
+   V NAME VALUE
+          Set the environment variable NAME to VALUE for gitlet commands in
+          the rest of this test.  If VALUE is missing, unset NAME instead.
    + NAME F
           Copy the contents of src/F into a file named NAME.
    - NAME
@@ -156,9 +159,10 @@ def editDistance(s1, s2):
                              dist[i-1][j-1] + (s1[i-1] != s2[j-1]))
     return dist[len(s1)][len(s2)]
 
-def nextCommand(full_cmnd, timeout):
+def nextCommand(full_cmnd, timeout, env=None):
     return check_output(full_cmnd, shell=True, universal_newlines=True,
-                        stdin=DEVNULL, stderr=STDOUT, timeout=timeout)
+                        stdin=DEVNULL, stderr=STDOUT, timeout=timeout,
+                        env=env)
 def stepIntoCommand(full_cmnd):
     out = check_output(full_cmnd, shell=True, universal_newlines=True,
                        stdin=DEVNULL, stderr=STDOUT, timeout=None)
@@ -202,7 +206,7 @@ def doCompile(target):
         return ("javac exited with code {}".format(excp.args[0]),
                 excp.output)
 
-def doExecute(cmnd, dir, timeout):
+def doExecute(cmnd, dir, timeout, env=None):
     here = getcwd()
     out = ""
     try:
@@ -217,7 +221,7 @@ def doExecute(cmnd, dir, timeout):
                 next_cmd = input("> ").strip().lower()
 
             if next_cmd == "n":
-                out = nextCommand(full_cmnd, timeout)
+                out = nextCommand(full_cmnd, timeout, env)
             elif next_cmd == "s":
                 full_cmnd = "{} {} {} {}".format(JAVA_COMMAND, JVM_COMMAND, CAPERS_COMMAND, cmnd)
                 print(f"Ready to debug the command `gitlet {cmnd}`")
@@ -226,7 +230,7 @@ def doExecute(cmnd, dir, timeout):
             elif next_cmd == "q":
                 return "User Exit", None
         else:
-            out = nextCommand(full_cmnd, timeout)
+            out = nextCommand(full_cmnd, timeout, env)
 
         if superverbose:
             print(out)
@@ -322,6 +326,7 @@ def doTest(test):
         print("Testing directory: {}".format(tmpdir))
     timeout = TIMEOUT
     defns = {}
+    env = dict(environ)
 
     def do_substs(L):
         c = 0
@@ -370,6 +375,11 @@ def doTest(test):
                     cdir = join(tmpdir, Group(1))
                     if not exists(cdir):
                         mkdir(cdir)
+            elif Match(r'V\s+(\S+)\s*(\S*)', line):
+                if Group(2) == "":
+                    env.pop(Group(1), None)
+                else:
+                    env[Group(1)] = Group(2)
             elif Match(r'T\s*(\S+)', line):
                 try:
                     timeout = float(Group(1))
@@ -392,7 +402,7 @@ def doTest(test):
                         is_regexp = Group(1)
                         break
                     expected.append(do_substs(L))
-                msg, out = doExecute(cmnd, cdir, timeout)
+                msg, out = doExecute(cmnd, cdir, timeout, env)
                 if verbose:
                     if out:
                         print(re.sub(r'(?m)^', '- ', chop_nl(out)))
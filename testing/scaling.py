@@ -0,0 +1,314 @@
+import sys, re, json
+from subprocess import run, DEVNULL, PIPE, TimeoutExpired
+from os.path import abspath, dirname, exists, join
+from getopt import getopt, GetoptError
+from os import access, environ, getcwd, mkdir, W_OK
+from shutil import rmtree, which
+from random import Random
+from statistics import median
+from time import perf_counter
+
+SHORT_USAGE = """\
+Usage: python3 scaling.py OPTIONS [CONFIG]
+   OPTIONS may include
+       --keep         Keep the generated repositories
+       --reps=N       Run each command N times (overrides CONFIG)
+       --sizes=A,B    Only use the repositories named A, B, ...
+       --json=FILE    Also write all measurements to FILE as JSON
+       --opens        Count file opens with strace (in one extra run)
+       --timeout=SEC  Seconds allowed to each execution of gitlet
+       --verbose      Print each command as it is run
+"""
+
+USAGE = SHORT_USAGE + """\
+
+CONFIG (default scaling.json, next to this script) describes the
+repositories to build, the commands to time on each, and the time budget
+for each (repository, command) pair.  For each repository, the runner
+creates a fresh directory, initializes gitlet, generates a history of
+"commits" commits over "files" files with fast-import (every tenth commit
+on master merges a short side branch, and a branch "topic" forks halfway),
+and resets master so that the working directory is populated.  A repository
+may also ask for "branches" extra branches, named team<K>/b<N> and spread
+over the history, for "pack_refs" to pack them afterwards, and for
+"commit_graph" to write the commit graph, and for "fsmonitor" to run
+the file system monitor while its commands are timed.
+
+Each command is then run "reps" times.  A command may have "setup" and
+"restore" lists of gitlet commands, run untimed before and after every
+repetition (e.g. to undo a merge); in any of these, ${MASTER} is replaced
+by the id of master's head after generation.  For each command the runner
+reports the median wall time, the bytes read and read calls made (from
+/proc/self/io, on Linux), and with --opens the number of files opened.
+
+The runner exits with status 1 if any median exceeds its budget, which
+makes it usable as a regression gate.
+"""
+
+JAVA_COMMAND = "java"
+GITLET_COMMAND = "gitlet.Main"
+TIMEOUT = 600
+
+def Usage():
+    print(SHORT_USAGE, file=sys.stderr)
+    sys.exit(1)
+
+def readIO():
+    """Return (bytes read, read calls) so far by this process and its
+    reaped children, or None where /proc/self/io is unavailable."""
+    try:
+        with open("/proc/self/io") as inp:
+            fields = dict(line.split(": ") for line in inp.read().splitlines())
+            return int(fields["rchar"]), int(fields["syscr"])
+    except (OSError, KeyError, ValueError):
+        return None
+
+def gitlet(args, dir, input=None):
+    """Run gitlet with ARGS in DIR and return its output."""
+    if verbose:
+        print("+ gitlet {}".format(" ".join(args)))
+    result = run([JAVA_COMMAND, GITLET_COMMAND] + args, cwd=dir, input=input,
+                 stdout=PIPE, stderr=PIPE, timeout=timeout)
+    if result.returncode != 0:
+        raise ValueError("gitlet {} failed: {}"
+                         .format(" ".join(args), result.stderr.decode()))
+    return result.stdout.decode()
+
+def countOpens(args, dir):
+    """Return the number of files opened by one run of gitlet with ARGS in
+    DIR, as seen by strace."""
+    trace = join(dir, ".gitlet-strace")
+    run(["strace", "-f", "-qq", "-e", "trace=open,openat", "-o", trace,
+         JAVA_COMMAND, GITLET_COMMAND] + args, cwd=dir,
+        stdout=DEVNULL, stderr=DEVNULL, timeout=timeout)
+    with open(trace) as inp:
+        opens = sum(1 for line in inp if "= -1" not in line)
+    run(["rm", "-f", trace])
+    return opens
+
+def generateStream(commits, files, branches=0, seed=42):
+    """Return a fast-import stream for a history of COMMITS commits over
+    FILES files with BRANCHES extra branches, as described in USAGE."""
+    rand = Random(seed)
+    out = []
+    mark = [0]
+    made = []
+    epoch = 1600000000
+
+    def data(text):
+        out.append("data {}\n{}\n".format(len(text.encode()), text))
+
+    def blob():
+        mark[0] += 1
+        lines = "".join("line {}\n".format(rand.randrange(1000))
+                        for _ in range(20 + rand.randrange(40)))
+        out.append("blob\nmark :{}\n".format(mark[0]))
+        data(lines)
+        return mark[0]
+
+    def changes():
+        return {"f{:06d}.txt".format(rand.randrange(files)): blob()
+                for _ in range(max(1, files // 20))}
+
+    def commit(branch, msg, tree, merge=None):
+        mark[0] += 1
+        made.append(mark[0])
+        out.append("commit {}\nmark :{}\ntime {}\n"
+                   .format(branch, mark[0], epoch + 60 * mark[0]))
+        data(msg)
+        if merge:
+            out.append("merge :{}\n".format(merge))
+        for path in sorted(tree):
+            out.append("M :{} {}\n".format(tree[path], path))
+        return mark[0]
+
+    head = commit("master", "commit 0",
+                  {"f{:06d}.txt".format(k): blob() for k in range(files)})
+    fork = head
+    for i in range(1, commits):
+        if i % 10 == 0:
+            out.append("reset side\nfrom :{}\n".format(head))
+            side = changes()
+            commit("side", "side {}a".format(i), side)
+            more = changes()
+            tip = commit("side", "side {}b".format(i), more)
+            side.update(more)
+            head = commit("master", "merge {}".format(i), side, tip)
+        else:
+            head = commit("master", "commit {}".format(i), changes())
+        if i == commits // 2:
+            fork = head
+    out.append("reset topic\nfrom :{}\n".format(fork))
+    for i in range(max(1, commits // 10)):
+        commit("topic", "topic {}".format(i), changes())
+    for i in range(branches):
+        out.append("reset team{}/b{:06d}\nfrom :{}\n"
+                   .format(i % 100, i, rand.choice(made)))
+    return "".join(out).encode()
+
+def buildRepo(spec, base):
+    dir = join(base, spec["name"])
+    rmtree(dir, ignore_errors=True)
+    mkdir(dir)
+    gitlet(["init"], dir)
+    start = perf_counter()
+    gitlet(["fast-import"], dir,
+           input=generateStream(spec["commits"], spec["files"],
+                                spec.get("branches", 0)))
+    print("  built {} ({} commits, {} files, {} more branches) in {:.1f}s"
+          .format(spec["name"], spec["commits"], spec["files"],
+                  spec.get("branches", 0), perf_counter() - start))
+    with open(join(dir, ".gitlet", "branches", "master")) as inp:
+        master = inp.read().strip()
+    gitlet(["reset", master], dir)
+    if spec.get("pack_refs"):
+        gitlet(["pack-refs"], dir)
+    if spec.get("commit_graph"):
+        gitlet(["commit-graph", "write"], dir)
+    if spec.get("fsmonitor"):
+        gitlet(["fsmonitor", "start"], dir)
+        gitlet(["status"], dir)
+    return dir, {"MASTER": master}
+
+def substitute(args, defns):
+    return [re.sub(r'\$\{(\w+)\}', lambda M: defns[M.group(1)], arg)
+            for arg in args]
+
+def measure(cmd, dir, defns):
+    times = []
+    bytesRead = []
+    reads = []
+    for _ in range(reps):
+        for setup in cmd.get("setup", []):
+            gitlet(substitute(setup, defns), dir)
+        before = readIO()
+        start = perf_counter()
+        gitlet(substitute(cmd["args"], defns), dir)
+        times.append(perf_counter() - start)
+        after = readIO()
+        if before and after:
+            bytesRead.append(after[0] - before[0])
+            reads.append(after[1] - before[1])
+        for restore in cmd.get("restore", []):
+            gitlet(substitute(restore, defns), dir)
+    result = { "seconds": median(times), "times": times }
+    if bytesRead:
+        result["bytes_read"] = int(median(bytesRead))
+        result["read_calls"] = int(median(reads))
+    if opens:
+        for setup in cmd.get("setup", []):
+            gitlet(substitute(setup, defns), dir)
+        result["opens"] = countOpens(substitute(cmd["args"], defns), dir)
+        for restore in cmd.get("restore", []):
+            gitlet(substitute(restore, defns), dir)
+    return result
+
+if __name__ == "__main__":
+    keep = False
+    verbose = False
+    reps = None
+    sizes = None
+    json_file = None
+    opens = False
+    timeout = TIMEOUT
+    prog_dir = None
+
+    try:
+        opts, args = \
+            getopt(sys.argv[1:], '',
+                   ['keep', 'reps=', 'sizes=', 'json=', 'opens',
+                    'timeout=', 'verbose', 'help'])
+        for opt, val in opts:
+            if opt == "--keep":
+                keep = True
+            elif opt == "--reps":
+                reps = int(val)
+            elif opt == "--sizes":
+                sizes = val.split(",")
+            elif opt == "--json":
+                json_file = val
+            elif opt == "--opens":
+                opens = True
+            elif opt == "--timeout":
+                timeout = float(val)
+            elif opt == "--verbose":
+                verbose = True
+            elif opt == "--help":
+                print(USAGE)
+                sys.exit(0)
+    except GetoptError:
+        Usage()
+    if len(args) > 1:
+        Usage()
+    config_file = args[0] if args else join(dirname(abspath(__file__)),
+                                            "scaling.json")
+    with open(config_file) as inp:
+        config = json.load(inp)
+    if reps is None:
+        reps = config.get("reps", 3)
+    if opens and not which("strace"):
+        print("strace not found; file opens will not be counted.",
+              file=sys.stderr)
+        opens = False
+
+    prog_dir = abspath(getcwd())
+    k = 10
+    while k > 0 and access(prog_dir, W_OK):
+        k -= 1
+        if exists(join(prog_dir, 'gitlet', 'Main.class')):
+            break
+        prog_dir = dirname(prog_dir)
+    else:
+        print("Could not find gitlet.Main.", file=sys.stderr)
+        sys.exit(1)
+    environ['CLASSPATH'] = "{}:{}".format(prog_dir,
+                                          environ.get('CLASSPATH', ''))
+
+    base = abspath("scaling.dir")
+    rmtree(base, ignore_errors=True)
+    mkdir(base)
+    budgets = config.get("budgets", {})
+    results = {}
+    over = 0
+    try:
+        for spec in config["repos"]:
+            if sizes is not None and spec["name"] not in sizes:
+                continue
+            print("{}:".format(spec["name"]))
+            dir, defns = buildRepo(spec, base)
+            results[spec["name"]] = {}
+            for cmd in config["commands"]:
+                result = measure(cmd, dir, defns)
+                results[spec["name"]][cmd["name"]] = result
+                budget = budgets.get(spec["name"], {}).get(cmd["name"])
+                line = "  {:<10} {:>9.1f} ms".format(cmd["name"],
+                                                     result["seconds"] * 1000)
+                if "bytes_read" in result:
+                    line += "  {:>12} bytes read  {:>8} reads".format(
+                        result["bytes_read"], result["read_calls"])
+                if "opens" in result:
+                    line += "  {:>8} opens".format(result["opens"])
+                if budget is not None:
+                    result["budget"] = budget
+                    if result["seconds"] > budget:
+                        over += 1
+                        line += "  OVER BUDGET ({:.0f} ms)".format(
+                            budget * 1000)
+                print(line)
+            if spec.get("fsmonitor"):
+                gitlet(["fsmonitor", "stop"], dir)
+            if not keep:
+                rmtree(dir, ignore_errors=True)
+    except (ValueError, TimeoutExpired) as excp:
+        print("FAILED ({})".format(excp))
+        sys.exit(1)
+    finally:
+        if not keep:
+            rmtree(base, ignore_errors=True)
+
+    if json_file:
+        with open(json_file, "w") as out:
+            json.dump(results, out, indent=2, sort_keys=True)
+    if over:
+        print("{} command(s) over budget.".format(over))
+        sys.exit(1)